@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 对比加锁的 {@link PendingPostQueue} 与无锁的 {@link MpscPendingPostQueue} 在多个生产者、一个消费者时的吞吐量
+ * 消费者与 BackgroundPoster 一样通过 poll(int) 取出元素，生产者数量依次为 1、4、16、64，每种组合先预热再取多轮的中位数
+ * <p>
+ * 运行：./gradlew :eventbus-java:queueBenchmark，可以通过参数指定每轮的元素总数和轮数，例如 --args="4000000 7"
+ * 结果只在与目标设备相近的多核机器上有意义，单核机器上生产者与消费者只能轮流运行
+ */
+public class PendingPostQueueBenchmark {
+    private static final int[] PRODUCER_COUNTS = {1, 4, 16, 64};
+
+    /**
+     * 被测队列
+     */
+    interface Queue {
+        void enqueue(PendingPost pendingPost);
+
+        PendingPost poll(int maxMillisToWait) throws InterruptedException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int total = args.length > 0 ? Integer.parseInt(args[0]) : 4000000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        System.out.println("CPUs: " + Runtime.getRuntime().availableProcessors() + ", events per round: " + total);
+        // 预热
+        for (int producers : PRODUCER_COUNTS) {
+            run(newLockedQueue(), producers, total);
+            run(newMpscQueue(), producers, total);
+        }
+        System.out.println("producers  locked (Mops/s)  mpsc (Mops/s)");
+        for (int producers : PRODUCER_COUNTS) {
+            double[] locked = new double[rounds];
+            double[] mpsc = new double[rounds];
+            // 交替运行，使两种队列受到相同的环境波动
+            for (int round = 0; round < rounds; round++) {
+                locked[round] = run(newLockedQueue(), producers, total);
+                mpsc[round] = run(newMpscQueue(), producers, total);
+            }
+            System.out.println(String.format(Locale.US, "%9d  %15.1f  %13.1f",
+                    producers, median(locked), median(mpsc)));
+        }
+    }
+
+    /**
+     * 所有生产者同时开始入队，消费者取出全部元素后结束计时
+     *
+     * @return double 吞吐量（百万个每秒）
+     */
+    static double run(final Queue queue, int producers, int total) throws InterruptedException {
+        final int perProducer = total / producers;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers];
+        for (int i = 0; i < producers; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < perProducer; j++) {
+                        queue.enqueue(PendingPost.newPendingPost(null, null));
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        int expected = perProducer * producers;
+        long startTime = System.nanoTime();
+        start.countDown();
+        int received = 0;
+        while (received < expected) {
+            if (queue.poll(1000) != null) {
+                received++;
+            }
+        }
+        long elapsed = System.nanoTime() - startTime;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return expected / (elapsed / 1e9) / 1e6;
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static Queue newLockedQueue() {
+        final PendingPostQueue queue = new PendingPostQueue();
+        return new Queue() {
+            @Override
+            public void enqueue(PendingPost pendingPost) {
+                queue.enqueue(pendingPost);
+            }
+
+            @Override
+            public PendingPost poll(int maxMillisToWait) throws InterruptedException {
+                return queue.poll(maxMillisToWait);
+            }
+        };
+    }
+
+    private static Queue newMpscQueue() {
+        final MpscPendingPostQueue queue = new MpscPendingPostQueue();
+        return new Queue() {
+            @Override
+            public void enqueue(PendingPost pendingPost) {
+                queue.enqueue(pendingPost);
+            }
+
+            @Override
+            public PendingPost poll(int maxMillisToWait) throws InterruptedException {
+                return queue.poll(maxMillisToWait);
+            }
+        };
+    }
+}
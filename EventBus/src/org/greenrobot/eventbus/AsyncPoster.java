@@ -39,13 +39,26 @@ class AsyncPoster implements Runnable, Poster {
      */
     public void enqueue(Subscription subscription, Object event) {
         // 获取一个 PendingPost
-        PendingPost pendingPost = PendingPost.obtainPendingPost(subscription, event);
+        PendingPost pendingPost = eventBus.obtainPendingPost(subscription, event);
         // 入队
         queue.enqueue(pendingPost);
         // 将任务提交到线程池处理，每个事件都会单独提交，不同于 BackgroundPoster
         eventBus.getExecutorService().execute(this);
     }
 
+    /**
+     * 批量入队，一次加锁入队全部事件，然后只提交一个任务依次消费这些事件，
+     * 不再为每个事件提交一个任务；同一批次的事件因此在同一个线程中按顺序处理
+     *
+     * @param head  PendingPost 链表头
+     * @param tail  PendingPost 链表尾
+     * @param count int 链表中的事件数量
+     */
+    void enqueueAll(PendingPost head, PendingPost tail, int count) {
+        queue.enqueueAll(head, tail);
+        eventBus.getExecutorService().execute(new BatchTask(count));
+    }
+
     @Override
     public void run() {
         // 获取队头的元素 一一对应，一次任务执行消费一个事件元素
@@ -57,4 +70,31 @@ class AsyncPoster implements Runnable, Poster {
         eventBus.invokeSubscriber(pendingPost);
     }
 
+    /**
+     * 批量入队的任务，消费与批次中事件数量相同的事件，与逐个提交任务时队列中的事件和任务一一对应
+     */
+    private final class BatchTask implements Runnable {
+        // 尚未消费的事件数量
+        private int remaining;
+
+        BatchTask(int count) {
+            remaining = count;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (remaining > 0) {
+                    remaining--;
+                    AsyncPoster.this.run();
+                }
+            } finally {
+                if (remaining > 0) {
+                    // 订阅者方法抛出异常，剩余的事件交给新的任务，不会残留在队列中
+                    eventBus.getExecutorService().execute(this);
+                }
+            }
+        }
+    }
+
 }
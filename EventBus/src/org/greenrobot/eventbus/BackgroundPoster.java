@@ -15,25 +15,30 @@
  */
 package org.greenrobot.eventbus;
 
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
 /**
  * 后台线程事件发布器，基于线程池实现
+ * <p>
+ * 由一条或多条通道（lane）组成，每条通道有自己的队列，同一时刻最多只有一个线程在消费，通道内按入队顺序串行调用订阅者方法。
+ * 订阅者按对象标识固定分配到一条通道：同一个订阅者的后台订阅方法始终串行、保持先进先出，
+ * 不同通道之间并行，一个耗时的订阅者只会阻塞与它同一通道的订阅者。默认只有一条通道，与所有后台订阅者共用一个线程的行为相同
  *
  * @author Markus
  */
-final class BackgroundPoster implements Runnable, Poster {
+final class BackgroundPoster implements Poster {
 
-    // 待发布事件队列
-    private final PendingPostQueue queue;
     private final EventBus eventBus;
+    // 后台通道
+    private final Lane[] lanes;
 
-    // 执行器运行状态 volatile 可见性保障
-    private volatile boolean executorRunning;
-
-    BackgroundPoster(EventBus eventBus) {
+    BackgroundPoster(EventBus eventBus, int laneCount) {
         this.eventBus = eventBus;
-        queue = new PendingPostQueue();
+        lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane();
+        }
     }
 
     /**
@@ -44,51 +49,116 @@ final class BackgroundPoster implements Runnable, Poster {
      */
     public void enqueue(Subscription subscription, Object event) {
         // 获得一个 PendingPost
-        PendingPost pendingPost = PendingPost.obtainPendingPost(subscription, event);
-        // 加锁 监视器为当前对象
-        synchronized (this) {
-            // 入队
-            queue.enqueue(pendingPost);
-            // 判断执行器是否在执行
-            if (!executorRunning) {
-                // 设置状态为正在执行
-                executorRunning = true;
-                // 向线程池提交任务
-                eventBus.getExecutorService().execute(this);
+        PendingPost pendingPost = eventBus.obtainPendingPost(subscription, event);
+        // 放入订阅者所在的通道
+        Lane lane = getLane(subscription);
+        // 无锁入队
+        lane.queue.enqueue(pendingPost);
+        // 执行器空闲时提交任务
+        lane.startExecutor();
+    }
+
+    /**
+     * 批量入队，每条通道一次原子追加，最多向线程池提交一次任务
+     *
+     * @param head PendingPost 链表头
+     * @param tail PendingPost 链表尾
+     */
+    void enqueueAll(PendingPost head, PendingPost tail) {
+        if (lanes.length == 1) {
+            lanes[0].queue.enqueueAll(head, tail);
+            lanes[0].startExecutor();
+            return;
+        }
+        // 按通道拆分链表，保持各通道内的相对顺序
+        PendingPost[] heads = new PendingPost[lanes.length];
+        PendingPost[] tails = new PendingPost[lanes.length];
+        PendingPost pendingPost = head;
+        while (pendingPost != null) {
+            PendingPost next = pendingPost == tail ? null : pendingPost.next;
+            int index = getLaneIndex(pendingPost.subscription);
+            if (heads[index] == null) {
+                heads[index] = pendingPost;
+            } else {
+                tails[index].next = pendingPost;
+            }
+            tails[index] = pendingPost;
+            pendingPost = next;
+        }
+        for (int i = 0; i < lanes.length; i++) {
+            if (heads[i] != null) {
+                lanes[i].queue.enqueueAll(heads[i], tails[i]);
+                lanes[i].startExecutor();
             }
         }
     }
 
-    @Override
-    public void run() {
-        try {
+    private Lane getLane(Subscription subscription) {
+        return lanes.length == 1 ? lanes[0] : lanes[getLaneIndex(subscription)];
+    }
+
+    /**
+     * 根据订阅者的对象标识计算通道序号，弱引用订阅使用同一次注册共享的弱引用对象，订阅者被回收后序号不变
+     */
+    private int getLaneIndex(Subscription subscription) {
+        Object owner = subscription.subscriberReference != null
+                ? subscription.subscriberReference : subscription.subscriber;
+        int hash = System.identityHashCode(owner);
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % lanes.length;
+    }
+
+    /**
+     * 后台通道，只有一个后台线程消费，使用无锁队列
+     */
+    final class Lane implements Runnable {
+        // 待发布事件队列
+        final MpscPendingPostQueue queue = new MpscPendingPostQueue();
+        // 执行器运行状态，通过 CAS 保证同一时刻最多只有一个任务在消费队列
+        private final AtomicBoolean executorRunning = new AtomicBoolean();
+
+        /**
+         * 执行器空闲时将其置为运行状态并向线程池提交任务，先读后 CAS，执行器运行时不产生写竞争
+         */
+        void startExecutor() {
+            if (!executorRunning.get() && executorRunning.compareAndSet(false, true)) {
+                eventBus.getExecutorService().execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            // 是否已经正常交出执行器
+            boolean released = false;
             try {
-                // 循环处理队列中的所有待发布事件
-                while (true) {
-                    // 取出队头的元素
-                    PendingPost pendingPost = queue.poll(1000);
-                    // 二次校验
-                    if (pendingPost == null) {
-                        // 第二级校验是同步的
-                        synchronized (this) {
-                            pendingPost = queue.poll();
-                            if (pendingPost == null) {
-                                // 最终没有元素，将执行器置为空闲
-                                executorRunning = false;
+                try {
+                    // 循环处理队列中的所有待发布事件
+                    while (true) {
+                        // 取出队头的元素，队列为空时最多等待 1 秒
+                        PendingPost pendingPost = queue.poll(1000);
+                        if (pendingPost == null) {
+                            // 将执行器置为空闲
+                            executorRunning.set(false);
+                            // 置为空闲前可能有事件入队但没有提交新任务，此时重新抢占执行器继续消费
+                            // 抢占失败说明已有新任务在消费，直接退出，不能再修改运行状态
+                            if (queue.isEmpty() || !executorRunning.compareAndSet(false, true)) {
+                                released = true;
                                 return;
                             }
+                            continue;
                         }
+                        // 调用订阅者方法
+                        eventBus.invokeSubscriber(pendingPost);
                     }
-                    // 调用订阅者方法
-                    eventBus.invokeSubscriber(pendingPost);
+                } catch (InterruptedException e) {
+                    eventBus.getLogger().log(Level.WARNING, Thread.currentThread().getName() + " was interrupted", e);
+                }
+            } finally {
+                // 异常退出时将运行状态置为空闲
+                if (!released) {
+                    executorRunning.set(false);
                 }
-            } catch (InterruptedException e) {
-                eventBus.getLogger().log(Level.WARNING, Thread.currentThread().getName() + " was interrupted", e);
             }
-        } finally {
-            // 执行完后将运行状态置为空闲
-            executorRunning = false;
         }
     }
-
 }
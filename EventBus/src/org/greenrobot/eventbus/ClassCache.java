@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.greenrobot.eventbus.android.AndroidDependenciesDetector;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 以 Class 对象为 key 的缓存，读写都不加锁
+ * JVM 上基于 {@link ClassValue} 实现：缓存值挂在 Class 对象自身上，不会阻止类及其类加载器被卸载，适用于插件、热部署等场景
+ * Android 上没有 ClassValue（也不存在类卸载的问题），回退到 {@link ConcurrentHashMap}
+ *
+ * @param <V> 缓存值类型
+ */
+abstract class ClassCache<V> {
+
+    // 当前运行环境是否支持 ClassValue
+    private static final boolean CLASS_VALUE_AVAILABLE = isClassValueAvailable();
+
+    /**
+     * 创建一个适合当前运行环境的缓存
+     */
+    static <V> ClassCache<V> create() {
+        if (CLASS_VALUE_AVAILABLE) {
+            return new ClassValueCache<>();
+        } else {
+            return new MapCache<>();
+        }
+    }
+
+    /**
+     * 获取缓存值
+     *
+     * @return V 缓存值，没有缓存时返回 null
+     */
+    abstract V get(Class<?> clazz);
+
+    /**
+     * 存入缓存值，已有缓存时覆盖
+     */
+    abstract void put(Class<?> clazz, V value);
+
+    /**
+     * 没有缓存时存入缓存值，原子操作，并发调用时只有一个值被存入
+     *
+     * @return V 已有的缓存值，存入成功时返回 null
+     */
+    abstract V putIfAbsent(Class<?> clazz, V value);
+
+    /**
+     * 清空缓存，主要用于测试
+     */
+    abstract void clear();
+
+    private static boolean isClassValueAvailable() {
+        if (AndroidDependenciesDetector.isAndroidSDKAvailable()) {
+            return false;
+        }
+        try {
+            Class.forName("java.lang.ClassValue");
+            return true;
+        } catch (Throwable th) {
+            return false;
+        }
+    }
+
+    /**
+     * 基于 ClassValue 的实现，每个 Class 对象对应一个可变的 {@link Holder}
+     * ClassValue 不支持整体清空，clear() 时直接替换为新的 ClassValue 实例
+     */
+    static final class ClassValueCache<V> extends ClassCache<V> {
+        private volatile ClassValue<Holder<V>> classValue = newClassValue();
+
+        @Override
+        V get(Class<?> clazz) {
+            return classValue.get(clazz).value;
+        }
+
+        @Override
+        void put(Class<?> clazz, V value) {
+            classValue.get(clazz).value = value;
+        }
+
+        @Override
+        V putIfAbsent(Class<?> clazz, V value) {
+            Holder<V> holder = classValue.get(clazz);
+            synchronized (holder) {
+                V existing = holder.value;
+                if (existing == null) {
+                    holder.value = value;
+                }
+                return existing;
+            }
+        }
+
+        @Override
+        void clear() {
+            classValue = newClassValue();
+        }
+
+        private static <V> ClassValue<Holder<V>> newClassValue() {
+            return new ClassValue<Holder<V>>() {
+                @Override
+                protected Holder<V> computeValue(Class<?> type) {
+                    return new Holder<>();
+                }
+            };
+        }
+    }
+
+    /**
+     * 基于 ConcurrentHashMap 的实现
+     */
+    static final class MapCache<V> extends ClassCache<V> {
+        private final ConcurrentHashMap<Class<?>, V> map = new ConcurrentHashMap<>();
+
+        @Override
+        V get(Class<?> clazz) {
+            return map.get(clazz);
+        }
+
+        @Override
+        void put(Class<?> clazz, V value) {
+            map.put(clazz, value);
+        }
+
+        @Override
+        V putIfAbsent(Class<?> clazz, V value) {
+            return map.putIfAbsent(clazz, value);
+        }
+
+        @Override
+        void clear() {
+            map.clear();
+        }
+    }
+
+    /**
+     * 缓存值持有者，volatile 保证不加锁时的可见性
+     */
+    static final class Holder<V> {
+        volatile V value;
+    }
+}
@@ -16,16 +16,32 @@
 package org.greenrobot.eventbus;
 
 import org.greenrobot.eventbus.android.AndroidDependenciesDetector;
+import org.greenrobot.eventbus.meta.EventTypeIndex;
+import org.greenrobot.eventbus.meta.SubscriberInfoIndex;
+import org.greenrobot.eventbus.meta.SubscriberInvoker;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 /**
@@ -48,27 +64,73 @@ public class EventBus {
      */
     private static final EventBusBuilder DEFAULT_BUILDER = new EventBusBuilder();
     /**
-     * 事件所有类型缓存
+     * 事件所有类型缓存，读写不加锁，且不会阻止事件类的类加载器被卸载，见 {@link ClassCache}
      * key: 事件 Class 对象
      * value: 事件 Class 对象的所有父级 Class 对象，包括超类和接口
      */
-    private static final Map<Class<?>, List<Class<?>>> eventTypesCache = new HashMap<>();
+    private static final ClassCache<List<Class<?>>> eventTypesCache = ClassCache.create();
     /**
-     * 按照事件类型分类的订阅方法 HashMap
+     * 没有订阅者时的分发计划
+     */
+    private static final Subscription[] EMPTY_DISPATCH_PLAN = new Subscription[0];
+    /**
+     * 按照事件类型分类的订阅方法 ConcurrentHashMap
      * key:Class<?> 事件类的 Class 对象， value:CopyOnWriteArrayList<Subscription> 订阅者方法包装类集合
+     * 写操作（注册、注销）在 synchronized (this) 中进行，发布事件时的读操作不加锁，
+     * 由 ConcurrentHashMap 和 CopyOnWriteArrayList 保证安全发布，发布线程不会与注册、注销竞争同一个监视器
      */
     private final Map<Class<?>, CopyOnWriteArrayList<Subscription>> subscriptionsByEventType;
     /**
-     * 订阅者所接收的事件类型
-     * key:Object 订阅者， value:List<Class<?>> 所接收的事件类型的 Class 对象 List
-     * todo: 为什么不使用 Set？而是使用List?
+     * 事件分发计划缓存
+     * key:Class<?> 事件的具体 Class 对象， value:Subscription[] 该事件需要分发到的所有订阅者方法包装类
+     * 开启事件继承时，分发计划已按 {@link #lookupAllEventTypes(Class)} 的顺序合并了所有超类和接口的订阅者方法，
+     * 发布事件时只需一次查找和一次数组遍历。注册、注销时只移除受影响事件类型的分发计划，下次发布时重新构建
+     * 只缓存非空的分发计划：没有订阅者的事件类不会进入缓存，缓存不会随发布过的事件类无限增长，也不会持有这些类
+     */
+    private final Map<Class<?>, Subscription[]> dispatchPlans;
+    /**
+     * 注册表版本，每次订阅关系发生变化、移除分发计划之前递增，只在同步块中修改
+     * 分发计划在锁外构建，构建期间版本发生变化时不保留构建结果，见 {@link #getDispatchPlan(Class)}
+     */
+    private volatile int registryVersion;
+    /**
+     * 订阅关系的注册序号，只在同步块中递增，见 {@link #newSubscription(Object, SubscriberReference, SubscriberMethod, Object)}
+     */
+    private long subscriptionSequence;
+    /**
+     * 已经打印过“没有订阅者”日志的事件类，每个事件类只打印一次
+     */
+    private final ClassCache<Boolean> noSubscribersLogged = ClassCache.create();
+    /**
+     * 带键的订阅索引
+     * key:Class<?> 事件类的 Class 对象， value:Map<Object, Subscription[]> 订阅键到订阅者方法包装类数组（按优先级排序）
+     * 与 subscriptionsByEventType 一样，写操作在 synchronized (this) 中以复制替换数组的方式进行，读操作不加锁
+     * 带键的订阅不进入分发计划，{@link #post(Object, Object)} 时按键直接查找，不会遍历其他键的订阅者
+     */
+    private final Map<Class<?>, Map<Object, Subscription[]>> keyedSubscriptionsByEventType;
+    /**
+     * 订阅者的订阅关系索引，按对象标识（==）区分订阅者，不依赖订阅者自身的 equals 和 hashCode
+     * key:Object 订阅者， value:List<Subscription> 该订阅者的所有订阅者方法包装类
+     * 注销时直接通过这些订阅关系找到受影响的事件类型，注销的代价只与该订阅者自身的订阅数量有关
+     */
+    private final Map<Object, List<Subscription>> subscriptionsBySubscriber;
+    /**
+     * 弱引用订阅者的订阅关系索引，见 {@link #registerWeak(Object)}
+     * key:SubscriberReference 订阅者的弱引用（按对象标识比较）， value:List<Subscription> 该订阅者的所有订阅者方法包装类
+     */
+    private final Map<SubscriberReference, List<Subscription>> weakSubscriptionsBySubscriber;
+    /**
+     * 弱引用订阅者被回收后，其弱引用进入此队列，注册和发布时清理对应的订阅关系
      */
-    private final Map<Object, List<Class<?>>> typesBySubscriber;
+    private final ReferenceQueue<Object> subscriberReferenceQueue;
     /**
-     * 黏性事件 ConcurrentHashMap
-     * key:Class<?> 事件类的 Class 对象，value: 当前最新的黏性事件
+     * 黏性事件存储，每个事件类保存当前最新的黏性事件，开启事件继承时按超类型建立索引，见 {@link StickyEventStore}
      */
-    private final Map<Class<?>, Object> stickyEvents;
+    private final StickyEventStore stickyEvents;
+    /**
+     * @Nullable 订阅者方法元数据的磁盘缓存，见 {@link EventBusBuilder#subscriberMetadataCache(java.io.File)}
+     */
+    private final SubscriberMetadataCache metadataCache;
     /**
      * ThreadLocal 线程间数据隔离，当前发布线程状态
      */
@@ -106,6 +168,10 @@ public class EventBus {
     private final boolean sendNoSubscriberEvent;
     // 事件继承
     private final boolean eventInheritance;
+    // 是否弱引用所有订阅者
+    private final boolean weakSubscribers;
+    // 是否复用 PendingPost 对象
+    private final boolean pendingPostPooling;
     // 索引类数量
     private final int indexCount;
     // 日志处理程序
@@ -150,22 +216,37 @@ public class EventBus {
 
     EventBus(EventBusBuilder builder) {
         logger = builder.getLogger();
-        subscriptionsByEventType = new HashMap<>();
-        typesBySubscriber = new HashMap<>();
-        stickyEvents = new ConcurrentHashMap<>();
+        subscriptionsByEventType = new ConcurrentHashMap<>();
+        dispatchPlans = new ConcurrentHashMap<>();
+        keyedSubscriptionsByEventType = new ConcurrentHashMap<>();
+        subscriptionsBySubscriber = new IdentityHashMap<>();
+        weakSubscriptionsBySubscriber = new HashMap<>();
+        subscriberReferenceQueue = new ReferenceQueue<>();
         mainThreadSupport = builder.getMainThreadSupport();
         mainThreadPoster = mainThreadSupport != null ? mainThreadSupport.createPoster(this) : null;
-        backgroundPoster = new BackgroundPoster(this);
+        backgroundPoster = new BackgroundPoster(this, builder.backgroundLanes);
         asyncPoster = new AsyncPoster(this);
         indexCount = builder.subscriberInfoIndexes != null ? builder.subscriberInfoIndexes.size() : 0;
+        if (builder.subscriberInfoIndexes != null) {
+            for (SubscriberInfoIndex index : builder.subscriberInfoIndexes) {
+                if (index instanceof EventTypeIndex) {
+                    addEventTypes((EventTypeIndex) index);
+                }
+            }
+        }
+        metadataCache = builder.subscriberMetadataCacheFile != null
+                ? new SubscriberMetadataCache(builder.subscriberMetadataCacheFile, logger) : null;
         subscriberMethodFinder = new SubscriberMethodFinder(builder.subscriberInfoIndexes,
-                builder.strictMethodVerification, builder.ignoreGeneratedIndex);
+                builder.strictMethodVerification, builder.ignoreGeneratedIndex, metadataCache, logger);
         logSubscriberExceptions = builder.logSubscriberExceptions;
         logNoSubscriberMessages = builder.logNoSubscriberMessages;
         sendSubscriberExceptionEvent = builder.sendSubscriberExceptionEvent;
         sendNoSubscriberEvent = builder.sendNoSubscriberEvent;
         throwSubscriberException = builder.throwSubscriberException;
         eventInheritance = builder.eventInheritance;
+        pendingPostPooling = builder.pendingPostPooling;
+        stickyEvents = new StickyEventStore(builder);
+        weakSubscribers = builder.weakSubscribers;
         executorService = builder.executorService;
     }
 
@@ -176,6 +257,35 @@ public class EventBus {
      * 订阅者可以是任何对象
      */
     public void register(Object subscriber) {
+        register(subscriber, null, false, weakSubscribers);
+    }
+
+    /**
+     * 以弱引用注册给定的订阅者
+     * EventBus 不会阻止订阅者被回收；订阅者被回收后，发布事件时跳过它的订阅关系，并在下次注册或发布时从注册表中移除
+     * 适用于生命周期难以保证调用 {@link #unregister(Object)} 的订阅者；注意订阅者必须由调用方保持强引用，否则可能随时停止接收事件
+     */
+    public void registerWeak(Object subscriber) {
+        register(subscriber, null, false, true);
+    }
+
+    /**
+     * 以给定的订阅键注册订阅者
+     * 带键的订阅者只接收通过 {@link #post(Object, Object)} 发布、并且订阅键相等（equals）的事件，
+     * 不接收 {@link #post(Object)} 发布的事件，也不接收黏性事件
+     * 发布时按键直接查找订阅者，与同一事件类型下其他键的订阅者数量无关，适用于大量按实体（例如订单 id）区分的订阅者
+     *
+     * @param subscriber Object 订阅者
+     * @param key        Object 订阅键，不能为 null，需要正确实现 equals 和 hashCode
+     */
+    public void register(Object subscriber, Object key) {
+        if (key == null) {
+            throw new EventBusException("Key may not be null");
+        }
+        register(subscriber, key, true, weakSubscribers);
+    }
+
+    private void register(Object subscriber, Object key, boolean keyed, boolean weak) {
         // 判断是否是 Android 平台，是否引用了 EventBus 的 Android 兼容库
         if (AndroidDependenciesDetector.isAndroidSDKAvailable() && !AndroidDependenciesDetector.areAndroidComponentsAvailable()) {
             // 满足条件进入此分支后，表示是 Android 平台，但是没有依赖 EventBus 的 Android 兼容库
@@ -188,12 +298,39 @@ public class EventBus {
         Class<?> subscriberClass = subscriber.getClass();
         // 通过 subscriberMethodFinder 订阅方法查找器去查找订阅者的订阅方法，得到一个订阅方法List List<SubscriberMethod>
         List<SubscriberMethod> subscriberMethods = subscriberMethodFinder.findSubscriberMethods(subscriberClass);
+        // 清理已被回收的弱引用订阅者
+        expungeStaleSubscribers();
+        List<Subscription> replaySubscriptions = null;
         // 加同步锁，监视器为当前 EventBus 对象
         synchronized (this) {
+            // 订阅者方法已由查找器按方法签名去重，重复订阅只可能来自重复注册，只需一次索引查找，不再逐个方法线性检查
+            // 带键的订阅者只能有一个订阅键，也不能同时不带键注册
+            List<Subscription> existing = getSubscriptions(subscriber);
+            if (existing != null) {
+                if (keyed || existing.get(0).key != null) {
+                    throw new EventBusException("Subscriber " + subscriberClass + " already registered");
+                }
+                throw new EventBusException("Subscriber " + subscriberClass + " already registered to event "
+                        + subscriberMethods.get(0).eventType);
+            }
+            // 同一个订阅者的所有订阅关系共用一个弱引用
+            SubscriberReference reference = weak ? new SubscriberReference(subscriber, subscriberReferenceQueue) : null;
             // 对订阅方法 List 进行遍历
             for (SubscriberMethod subscriberMethod : subscriberMethods) {
                 // 遍历到的每一个方法对其产生订阅关系，就是正式存放在订阅者的大集合中
-                subscribe(subscriber, subscriberMethod);
+                Subscription newSubscription = subscribe(subscriber, reference, subscriberMethod, key);
+                if (newSubscription != null && subscriberMethod.replay > 0) {
+                    if (replaySubscriptions == null) {
+                        replaySubscriptions = new ArrayList<>();
+                    }
+                    replaySubscriptions.add(newSubscription);
+                }
+            }
+        }
+        // 在锁外回放黏性事件历史，只锁定各事件类型的环形缓冲区
+        if (replaySubscriptions != null) {
+            for (Subscription subscription : replaySubscriptions) {
+                replayStickyEvents(subscription);
             }
         }
     }
@@ -201,28 +338,37 @@ public class EventBus {
     /**
      * 产生订阅关系，实际上该方法主要就是将订阅方法放进那个大集合中，之前做的事情是将这些方法找出来
      * 而此方法是正式将方法放入那些正式的大集合中
-     * 必须在同步块中调用
+     * 必须在同步块中调用，调用者负责检查订阅者尚未注册
      *
      * @param subscriber       Object 订阅者对象
+     * @param reference        SubscriberReference 订阅者的弱引用，强引用订阅时为 null
      * @param subscriberMethod SubscriberMethod 订阅者方法
+     * @param key              Object 订阅键，不带键时为 null
+     * @return Subscription 不带键的新订阅关系，带键时为 null
      */
-    private void subscribe(Object subscriber, SubscriberMethod subscriberMethod) {
+    private Subscription subscribe(Object subscriber, SubscriberReference reference, SubscriberMethod subscriberMethod,
+                           Object key) {
         // 获取订阅者方法接收的事件类型 Class 对象
         Class<?> eventType = subscriberMethod.eventType;
+        if (key != null) {
+            // 带键的订阅只进入带键的订阅索引，不影响分发计划，也不接收黏性事件
+            Subscription newSubscription = newSubscription(subscriber, reference, subscriberMethod, key);
+            subscribeKeyed(newSubscription);
+            addSubscription(subscriber, newSubscription);
+            return null;
+        }
         // 创建 Subscription
-        Subscription newSubscription = new Subscription(subscriber, subscriberMethod);
+        Subscription newSubscription = newSubscription(subscriber, reference, subscriberMethod, null);
+        if (subscriberMethod.replay > 0) {
+            // 在订阅关系对发布线程可见之前创建回放状态，回放结束前发布的事件由回放线程按顺序传递
+            newSubscription.replay = new StickyReplay(eventType);
+        }
         // 从 subscriptionsByEventType 中 尝试获取当前订阅方法接收的事件类型的值
         CopyOnWriteArrayList<Subscription> subscriptions = subscriptionsByEventType.get(eventType);
         if (subscriptions == null) {
             // 如果为 null，表示该方法是第一个，创建空的CopyOnWriteArrayList put 进 subscriptionsByEventType
             subscriptions = new CopyOnWriteArrayList<>();
             subscriptionsByEventType.put(eventType, subscriptions);
-        } else {
-            // 如果不为 null，判断现有数据中是否存在该方法，如果存在抛出 EventBusException 异常
-            if (subscriptions.contains(newSubscription)) {
-                throw new EventBusException("Subscriber " + subscriber.getClass() + " already registered to event "
-                        + eventType);
-            }
         }
 
         // 遍历当前事件类型的所有接收方法
@@ -234,39 +380,380 @@ public class EventBus {
                 break;
             }
         }
-        // 获取当前订阅者接收的事件类型的数据
-        List<Class<?>> subscribedEvents = typesBySubscriber.get(subscriber);
-        if (subscribedEvents == null) {
-            subscribedEvents = new ArrayList<>();
-            typesBySubscriber.put(subscriber, subscribedEvents);
-        }
-        // 将当前的事件类型添加进订阅者的接收范围内
-        subscribedEvents.add(eventType);
+        // 移除受影响的分发计划
+        invalidateDispatchPlans(eventType);
+        // 将订阅关系添加进订阅者的订阅关系索引
+        addSubscription(subscriber, newSubscription);
 
         // 对黏性事件进行处理
         if (subscriberMethod.sticky) {
-            // 是否事件继承
-            if (eventInheritance) {
-                // 必须考虑所有 eventType 子类的现有粘性事件。
-                // Note: 迭代所有事件可能会因大量粘性事件而效率低下，因此应更改数据结构以允许更有效的查找
-                // (e.g. 存储超类的子类的附加映射: Class -> List<Class>).
-                Set<Map.Entry<Class<?>, Object>> entries = stickyEvents.entrySet();
-                for (Map.Entry<Class<?>, Object> entry : entries) {
-                    Class<?> candidateEventType = entry.getKey();
-                    // 判断 eventType 是否是 candidateEventType 的父类或父接口
-                    if (eventType.isAssignableFrom(candidateEventType)) {
-                        Object stickyEvent = entry.getValue();
-                        // 如果是父子关系  进行事件检查和发布
-                        checkPostStickyEventToSubscription(newSubscription, stickyEvent);
+            if (subscriberMethod.replay > 0) {
+                // 从现在开始保存该事件类型的黏性事件历史
+                stickyEvents.ensureHistory(eventType, subscriberMethod.replay);
+            }
+            postStickyEvents(newSubscription);
+        }
+        return newSubscription;
+    }
+
+    /**
+     * 将已有的黏性事件发布到新的订阅者方法
+     *
+     * @param newSubscription Subscription 黏性的订阅者方法包装类
+     */
+    private void postStickyEvents(Subscription newSubscription) {
+        Class<?> eventType = newSubscription.subscriberMethod.eventType;
+        // 回放历史的订阅者方法由 replayStickyEvents 发布与事件类型完全相同的事件
+        boolean replay = newSubscription.subscriberMethod.replay > 0;
+        // 是否事件继承
+        if (eventInheritance) {
+            // 必须考虑所有 eventType 子类的现有粘性事件
+            // 黏性事件存储按超类型建立了索引，直接查找，不再遍历所有黏性事件
+            List<Object> stickyEventList = stickyEvents.getAssignable(eventType);
+            int size = stickyEventList.size();
+            for (int i = 0; i < size; i++) {
+                Object stickyEvent = stickyEventList.get(i);
+                if (replay && stickyEvent.getClass() == eventType) {
+                    continue;
+                }
+                // 进行事件检查和发布
+                checkPostStickyEventToSubscription(newSubscription, stickyEvent);
+            }
+        } else if (!replay) {
+            // 从黏性事件 Map 中获取当前事件类型的最新事件
+            Object stickyEvent = stickyEvents.get(eventType);
+            // 校验事件并发布事件
+            checkPostStickyEventToSubscription(newSubscription, stickyEvent);
+        }
+    }
+
+    /**
+     * 按发布顺序将事件类型最近的黏性事件回放给新的订阅者方法，最多 {@link Subscribe#replay()} 个
+     * 不持有 EventBus 的锁，只在复制环形缓冲区时锁定黏性事件存储；历史为空时发布当前最新的黏性事件
+     * 回放期间发布线程传递给该订阅者的事件暂存在 {@link StickyReplay} 中，回放完历史后按到达顺序传递，
+     * 其中已包含在快照中的黏性事件不再传递，保证不重复、不早于更旧的历史事件到达
+     *
+     * @param newSubscription Subscription 回放历史的订阅者方法包装类
+     */
+    private void replayStickyEvents(Subscription newSubscription) {
+        SubscriberMethod subscriberMethod = newSubscription.subscriberMethod;
+        StickyReplay replay = newSubscription.replay;
+        Object[] events;
+        // 快照与快照序号在同一个同步块中获取，与 postSticky 存入黏性事件互斥
+        synchronized (stickyEvents) {
+            events = stickyEvents.getLatest(subscriberMethod.eventType, subscriberMethod.replay);
+            replay.start(stickyEvents.getSequence());
+        }
+        try {
+            for (Object event : events) {
+                // 回放过程中订阅者可能已被注销
+                if (!newSubscription.active) {
+                    break;
+                }
+                checkPostStickyEventToSubscription(newSubscription, event);
+            }
+            // 传递回放期间暂存的事件，直到没有新的暂存事件，之后的事件由发布线程直接传递
+            Object[] deferred;
+            while ((deferred = replay.drain()) != null) {
+                if (deferred.length > 0 && newSubscription.active) {
+                    boolean isMainThread = isMainThread();
+                    for (Object event : deferred) {
+                        postToSubscription(newSubscription, event, isMainThread);
+                    }
+                }
+            }
+        } finally {
+            // 订阅者方法抛出异常时同样结束回放，之后的事件由发布线程直接传递
+            replay.finish();
+        }
+    }
+
+    /**
+     * 批量注册给定的订阅者，效果与逐个调用 {@link #register(Object)} 相同
+     * 订阅者方法的查找在线程池中并行进行；所有订阅关系在一次加锁中合并进注册表，每个事件类型只排序合并、复制一次，
+     * 不再为每个订阅者方法复制一次 CopyOnWriteArrayList 并线性查找插入位置；黏性事件在释放锁之后发布
+     * 集合中有重复的订阅者或已注册的订阅者时抛出 {@link EventBusException}，此时不会注册任何订阅者
+     *
+     * @param subscribers Collection<?> 订阅者集合
+     */
+    public void registerAll(Collection<?> subscribers) {
+        if (AndroidDependenciesDetector.isAndroidSDKAvailable() && !AndroidDependenciesDetector.areAndroidComponentsAvailable()) {
+            throw new RuntimeException("It looks like you are using EventBus on Android, " +
+                    "make sure to add the \"eventbus\" Android library to your dependencies.");
+        }
+        List<Object> subscriberList = new ArrayList<>(subscribers);
+        // 查找阶段：按订阅者类去重后并行查找订阅者方法
+        Map<Class<?>, Integer> classIndexes = new HashMap<>();
+        List<Class<?>> subscriberClasses = new ArrayList<>();
+        for (Object subscriber : subscriberList) {
+            Class<?> subscriberClass = subscriber.getClass();
+            if (!classIndexes.containsKey(subscriberClass)) {
+                classIndexes.put(subscriberClass, subscriberClasses.size());
+                subscriberClasses.add(subscriberClass);
+            }
+        }
+        List<List<SubscriberMethod>> methodsByClass =
+                subscriberMethodFinder.findSubscriberMethods(subscriberClasses, executorService);
+        expungeStaleSubscribers();
+
+        List<Subscription> stickySubscriptions = new ArrayList<>();
+        // 合并阶段：一次加锁完成所有订阅关系的合并
+        synchronized (this) {
+            Map<Object, Boolean> seen = new IdentityHashMap<>();
+            for (Object subscriber : subscriberList) {
+                if (seen.put(subscriber, Boolean.TRUE) != null || getSubscriptions(subscriber) != null) {
+                    throw new EventBusException("Subscriber " + subscriber.getClass() + " already registered");
+                }
+            }
+            // 按事件类型分组新的订阅关系，保持注册顺序
+            Map<Class<?>, List<Subscription>> newSubscriptionsByEventType = new HashMap<>();
+            for (Object subscriber : subscriberList) {
+                List<SubscriberMethod> subscriberMethods = methodsByClass.get(classIndexes.get(subscriber.getClass()));
+                SubscriberReference reference = weakSubscribers
+                        ? new SubscriberReference(subscriber, subscriberReferenceQueue) : null;
+                for (SubscriberMethod subscriberMethod : subscriberMethods) {
+                    Class<?> eventType = subscriberMethod.eventType;
+                    Subscription newSubscription = newSubscription(subscriber, reference, subscriberMethod, null);
+                    if (subscriberMethod.replay > 0) {
+                        newSubscription.replay = new StickyReplay(eventType);
+                    }
+                    List<Subscription> newSubscriptions = newSubscriptionsByEventType.get(eventType);
+                    if (newSubscriptions == null) {
+                        newSubscriptions = new ArrayList<>();
+                        newSubscriptionsByEventType.put(eventType, newSubscriptions);
+                    }
+                    newSubscriptions.add(newSubscription);
+                    addSubscription(subscriber, newSubscription);
+                    if (subscriberMethod.sticky) {
+                        stickySubscriptions.add(newSubscription);
+                        if (subscriberMethod.replay > 0) {
+                            stickyEvents.ensureHistory(eventType, subscriberMethod.replay);
+                        }
                     }
                 }
+            }
+            for (Map.Entry<Class<?>, List<Subscription>> entry : newSubscriptionsByEventType.entrySet()) {
+                Class<?> eventType = entry.getKey();
+                List<Subscription> merged = mergeByPriority(subscriptionsByEventType.get(eventType), entry.getValue());
+                // 整体替换列表，不加锁的读线程看到的要么是旧列表，要么是完整的新列表
+                subscriptionsByEventType.put(eventType, new CopyOnWriteArrayList<>(merged));
+                invalidateDispatchPlans(eventType);
+            }
+        }
+        // 发布阶段：在锁外将已有的黏性事件发布给新的黏性订阅者
+        for (Subscription subscription : stickySubscriptions) {
+            if (subscription.active) {
+                postStickyEvents(subscription);
+            }
+            if (subscription.subscriberMethod.replay > 0) {
+                // 已被注销的订阅者不回放，但仍要结束回放状态
+                replayStickyEvents(subscription);
+            }
+        }
+    }
+
+    /**
+     * 在后台预热给定订阅者类和事件类的元数据缓存，使之后第一次注册和发布时不再在调用线程中查找
+     * 在 {@link EventBusBuilder#executorService(ExecutorService)} 配置的线程池中并行查找订阅者方法并存入订阅者方法缓存，
+     * 开启事件继承时，同时解析事件类（以及订阅者方法接收的事件类型）的超类和接口，存入事件类型缓存
+     * 不注册任何订阅者；订阅者类没有订阅者方法时，返回的 Future 以 {@link EventBusException} 结束
+     *
+     * @param subscriberClasses Collection<Class<?>> 订阅者 Class 对象
+     * @param eventClasses      Collection<Class<?>> 事件 Class 对象
+     * @return Future<?> 预热完成时结束，可以等待
+     */
+    public Future<?> prewarm(Collection<Class<?>> subscriberClasses, Collection<Class<?>> eventClasses) {
+        final List<Class<?>> subscriberClassList = new ArrayList<>(new LinkedHashSet<>(subscriberClasses));
+        final List<Class<?>> eventClassList = new ArrayList<>(eventClasses);
+        return executorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                List<List<SubscriberMethod>> methodsByClass =
+                        subscriberMethodFinder.findSubscriberMethods(subscriberClassList, executorService);
+                if (eventInheritance) {
+                    for (List<SubscriberMethod> subscriberMethods : methodsByClass) {
+                        for (SubscriberMethod subscriberMethod : subscriberMethods) {
+                            lookupAllEventTypes(subscriberMethod.eventType);
+                        }
+                    }
+                    for (Class<?> eventClass : eventClassList) {
+                        lookupAllEventTypes(eventClass);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 将新的订阅关系按优先级合并到已有的订阅关系中
+     * 与逐个调用 {@link #subscribe(Object, SubscriberMethod, Object)} 的结果一致：优先级高的在前，相同优先级时已有的在前，新的按注册顺序
+     *
+     * @param existing         List<Subscription> 已有的订阅关系（已按优先级排序），可以为 null
+     * @param newSubscriptions List<Subscription> 新的订阅关系（按注册顺序）
+     * @return List<Subscription> 合并后的订阅关系
+     */
+    private static List<Subscription> mergeByPriority(List<Subscription> existing, List<Subscription> newSubscriptions) {
+        // Collections.sort 是稳定排序，相同优先级保持注册顺序
+        Collections.sort(newSubscriptions, new Comparator<Subscription>() {
+            @Override
+            public int compare(Subscription a, Subscription b) {
+                return Integer.compare(b.subscriberMethod.priority, a.subscriberMethod.priority);
+            }
+        });
+        if (existing == null || existing.isEmpty()) {
+            return newSubscriptions;
+        }
+        List<Subscription> merged = new ArrayList<>(existing.size() + newSubscriptions.size());
+        int i = 0;
+        int j = 0;
+        int existingSize = existing.size();
+        int newSize = newSubscriptions.size();
+        while (i < existingSize || j < newSize) {
+            if (j == newSize || (i < existingSize
+                    && existing.get(i).subscriberMethod.priority >= newSubscriptions.get(j).subscriberMethod.priority)) {
+                merged.add(existing.get(i++));
             } else {
-                // 从黏性事件 Map 中获取当前事件类型的最新事件
-                Object stickyEvent = stickyEvents.get(eventType);
-                // 校验事件并发布事件
-                checkPostStickyEventToSubscription(newSubscription, stickyEvent);
+                merged.add(newSubscriptions.get(j++));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 将带键的订阅按优先级插入带键的订阅索引，复制替换该键的订阅数组
+     * 必须在同步块中调用
+     */
+    private void subscribeKeyed(Subscription newSubscription) {
+        Class<?> eventType = newSubscription.subscriberMethod.eventType;
+        Map<Object, Subscription[]> keyedSubscriptions = keyedSubscriptionsByEventType.get(eventType);
+        if (keyedSubscriptions == null) {
+            keyedSubscriptions = new ConcurrentHashMap<>();
+            keyedSubscriptionsByEventType.put(eventType, keyedSubscriptions);
+        }
+        Subscription[] subscriptions = keyedSubscriptions.get(newSubscription.key);
+        if (subscriptions == null) {
+            keyedSubscriptions.put(newSubscription.key, new Subscription[]{newSubscription});
+            return;
+        }
+        int priority = newSubscription.subscriberMethod.priority;
+        int size = subscriptions.length;
+        // 与不带键的订阅一致：插入到第一个优先级更低的订阅之前，相同优先级按注册顺序
+        int index = 0;
+        while (index < size && subscriptions[index].subscriberMethod.priority >= priority) {
+            index++;
+        }
+        Subscription[] newSubscriptions = new Subscription[size + 1];
+        System.arraycopy(subscriptions, 0, newSubscriptions, 0, index);
+        newSubscriptions[index] = newSubscription;
+        System.arraycopy(subscriptions, index, newSubscriptions, index + 1, size - index);
+        keyedSubscriptions.put(newSubscription.key, newSubscriptions);
+    }
+
+    /**
+     * 创建订阅关系，reference 不为 null 时弱引用订阅者
+     * 必须在同步块中调用，按创建顺序为订阅关系分配注册序号，见 {@link #indexOfSubscription(List, Subscription)}
+     */
+    private Subscription newSubscription(Object subscriber, SubscriberReference reference,
+                                         SubscriberMethod subscriberMethod, Object key) {
+        Subscription subscription;
+        if (reference != null) {
+            subscription = new Subscription(reference, subscriberMethod, key);
+        } else {
+            subscription = new Subscription(subscriber, subscriberMethod, key);
+        }
+        subscription.sequence = ++subscriptionSequence;
+        return subscription;
+    }
+
+    /**
+     * 在按优先级排序的订阅关系中二分查找给定的订阅关系（按对象标识）
+     * 注册表中的订阅关系按优先级从高到低排列，相同优先级按注册顺序排列（新的订阅关系总是插入到相同优先级的末尾），
+     * 因此按（优先级降序，注册序号升序）有序，可以直接定位，不必遍历该事件类型的所有订阅者
+     *
+     * @return int 下标，不存在时返回 -1
+     */
+    private static int indexOfSubscription(List<Subscription> subscriptions, Subscription subscription) {
+        int priority = subscription.subscriberMethod.priority;
+        long sequence = subscription.sequence;
+        int low = 0;
+        int high = subscriptions.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Subscription candidate = subscriptions.get(mid);
+            int candidatePriority = candidate.subscriberMethod.priority;
+            if (candidatePriority > priority || (candidatePriority == priority && candidate.sequence < sequence)) {
+                low = mid + 1;
+            } else if (candidatePriority < priority || candidate.sequence > sequence) {
+                high = mid - 1;
+            } else {
+                return candidate == subscription ? mid : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 将订阅关系添加进订阅者的订阅关系索引
+     * 必须在同步块中调用
+     */
+    private void addSubscription(Object subscriber, Subscription subscription) {
+        List<Subscription> subscriptions = getSubscriptions(subscriber);
+        if (subscriptions == null) {
+            subscriptions = new ArrayList<>();
+            if (subscription.subscriberReference != null) {
+                weakSubscriptionsBySubscriber.put(subscription.subscriberReference, subscriptions);
+            } else {
+                subscriptionsBySubscriber.put(subscriber, subscriptions);
             }
         }
+        subscriptions.add(subscription);
+    }
+
+    /**
+     * 获取订阅者的所有订阅关系
+     * 必须在同步块中调用
+     *
+     * @return List<Subscription> 订阅关系，未注册时返回 null
+     */
+    private List<Subscription> getSubscriptions(Object subscriber) {
+        List<Subscription> subscriptions = subscriptionsBySubscriber.get(subscriber);
+        if (subscriptions == null && !weakSubscriptionsBySubscriber.isEmpty()) {
+            subscriptions = weakSubscriptionsBySubscriber.get(new SubscriberReference(subscriber, null));
+        }
+        return subscriptions;
+    }
+
+    /**
+     * 从订阅关系索引中移除订阅者
+     * 必须在同步块中调用
+     *
+     * @return List<Subscription> 被移除的订阅关系，未注册时返回 null
+     */
+    private List<Subscription> removeSubscriptions(Object subscriber) {
+        List<Subscription> subscriptions = subscriptionsBySubscriber.remove(subscriber);
+        if (subscriptions == null && !weakSubscriptionsBySubscriber.isEmpty()) {
+            subscriptions = weakSubscriptionsBySubscriber.remove(new SubscriberReference(subscriber, null));
+        }
+        return subscriptions;
+    }
+
+    /**
+     * 清理已被回收的弱引用订阅者的订阅关系
+     * 没有被回收的订阅者时只是一次 {@link ReferenceQueue#poll()}，不加锁
+     */
+    private void expungeStaleSubscribers() {
+        Reference<?> reference = subscriberReferenceQueue.poll();
+        if (reference == null) {
+            return;
+        }
+        synchronized (this) {
+            do {
+                List<Subscription> subscriptions = weakSubscriptionsBySubscriber.remove(reference);
+                if (subscriptions != null) {
+                    unsubscribe(subscriptions);
+                }
+            } while ((reference = subscriberReferenceQueue.poll()) != null);
+        }
     }
 
     /**
@@ -299,84 +786,340 @@ public class EventBus {
      * @return 是否已经进行注册
      */
     public synchronized boolean isRegistered(Object subscriber) {
-        return typesBySubscriber.containsKey(subscriber);
+        return getSubscriptions(subscriber) != null;
     }
 
     /**
-     * 按事件类型退订
-     * 只更新subscriptionsByEventType，不更新 typeBySubscriber！调用者必须更新 typesBySubscriber。
+     * 从事件类型的订阅关系中移除给定的订阅关系
+     * 只更新subscriptionsByEventType，不更新 subscriptionsBySubscriber！调用者必须更新 subscriptionsBySubscriber，
+     * 并且负责移除受影响的分发计划
+     * 按注册序号二分定位后由 CopyOnWriteArrayList 复制一次底层数组，不再遍历、过滤该事件类型的所有订阅者
      *
-     * @param subscriber Object 订阅者
-     * @param eventType  Class<?> 事件类型 Class 对象
+     * @param subscription Subscription 要移除的订阅关系
      */
-    private void unsubscribeByEventType(Object subscriber, Class<?> eventType) {
+    private void unsubscribeByEventType(Subscription subscription) {
+        Class<?> eventType = subscription.subscriberMethod.eventType;
         // 获取需要退订的事件类型的订阅者方法
-        List<Subscription> subscriptions = subscriptionsByEventType.get(eventType);
+        CopyOnWriteArrayList<Subscription> subscriptions = subscriptionsByEventType.get(eventType);
         if (subscriptions != null) {
-            // 循环遍历移除当前订阅者的订阅者方法
-            int size = subscriptions.size();
-            for (int i = 0; i < size; i++) {
-                Subscription subscription = subscriptions.get(i);
-                if (subscription.subscriber == subscriber) {
-                    subscription.active = false;
-                    subscriptions.remove(i);
-                    i--;
-                    size--;
+            int index = indexOfSubscription(subscriptions, subscription);
+            if (index < 0) {
+                return;
+            }
+            if (subscriptions.size() == 1) {
+                // 该事件类型已没有订阅者时移除，避免长期持有已卸载的事件类
+                subscriptionsByEventType.remove(eventType);
+            } else {
+                // 不加锁的读线程看到的要么是旧数组，要么是完整的新数组
+                subscriptions.remove(index);
+            }
+        }
+    }
+
+    /**
+     * 按事件类型退订带键的订阅者，复制替换该键的订阅数组，数组为空时移除该键
+     * 必须在同步块中调用
+     */
+    private void unsubscribeKeyedByEventType(Subscription subscription) {
+        Class<?> eventType = subscription.subscriberMethod.eventType;
+        Map<Object, Subscription[]> keyedSubscriptions = keyedSubscriptionsByEventType.get(eventType);
+        if (keyedSubscriptions == null) {
+            return;
+        }
+        Subscription[] subscriptions = keyedSubscriptions.get(subscription.key);
+        if (subscriptions == null) {
+            return;
+        }
+        int index = indexOfSubscription(Arrays.asList(subscriptions), subscription);
+        if (index < 0) {
+            return;
+        }
+        int size = subscriptions.length;
+        if (size == 1) {
+            keyedSubscriptions.remove(subscription.key);
+            if (keyedSubscriptions.isEmpty()) {
+                keyedSubscriptionsByEventType.remove(eventType);
+            }
+        } else {
+            Subscription[] remaining = new Subscription[size - 1];
+            System.arraycopy(subscriptions, 0, remaining, 0, index);
+            System.arraycopy(subscriptions, index + 1, remaining, index, size - index - 1);
+            keyedSubscriptions.put(subscription.key, remaining);
+        }
+    }
+
+    /**
+     * 移除所有包含给定事件类型订阅者方法的分发计划
+     * 必须在同步块中调用，且在订阅关系修改完成之后调用
+     *
+     * @param eventType Class<?> 订阅关系发生变化的事件类型 Class 对象
+     */
+    private void invalidateDispatchPlans(Class<?> eventType) {
+        // 先递增版本再移除，与 getDispatchPlan() 中先缓存再检查版本配对，过期的分发计划不会留在缓存中
+        registryVersion++;
+        if (eventInheritance) {
+            // 事件类型本身及其所有子类型的分发计划都包含该事件类型的订阅者方法
+            Iterator<Class<?>> iterator = dispatchPlans.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (eventType.isAssignableFrom(iterator.next())) {
+                    iterator.remove();
                 }
             }
+        } else {
+            dispatchPlans.remove(eventType);
         }
     }
 
+    /**
+     * 获取给定事件 Class 对象的分发计划，没有缓存时构建，非空时缓存
+     * 构建不加锁，发布线程不会与注册、注销竞争同一个监视器：构建前记录注册表版本，缓存后再次检查，
+     * 版本发生变化说明构建期间订阅关系被修改，分发计划可能已经过期，将其从缓存中移除（本次发布仍使用它）
+     *
+     * @param eventClass Class<?> 事件的具体 Class 对象
+     * @return Subscription[] 分发计划，没有订阅者时为空数组
+     */
+    private Subscription[] getDispatchPlan(Class<?> eventClass) {
+        Subscription[] plan = dispatchPlans.get(eventClass);
+        if (plan == null) {
+            int version = registryVersion;
+            plan = buildDispatchPlan(eventClass);
+            if (plan.length > 0) {
+                dispatchPlans.put(eventClass, plan);
+                if (registryVersion != version) {
+                    dispatchPlans.remove(eventClass, plan);
+                }
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * 构建分发计划，按事件类型的顺序合并各类型的订阅者方法，同一事件类型的订阅者方法在数组中是连续的
+     * 只读取不加锁的订阅关系注册表，没有订阅者时返回共享的空数组，不分配内存
+     */
+    private Subscription[] buildDispatchPlan(Class<?> eventClass) {
+        if (!eventInheritance) {
+            CopyOnWriteArrayList<Subscription> subscriptions = subscriptionsByEventType.get(eventClass);
+            if (subscriptions == null) {
+                return EMPTY_DISPATCH_PLAN;
+            }
+            return subscriptions.toArray(EMPTY_DISPATCH_PLAN);
+        }
+        List<Class<?>> eventTypes = lookupAllEventTypes(eventClass);
+        List<Subscription> plan = null;
+        int countTypes = eventTypes.size();
+        for (int h = 0; h < countTypes; h++) {
+            CopyOnWriteArrayList<Subscription> subscriptions = subscriptionsByEventType.get(eventTypes.get(h));
+            if (subscriptions != null) {
+                if (plan == null) {
+                    plan = new ArrayList<>();
+                }
+                plan.addAll(subscriptions);
+            }
+        }
+        return plan != null ? plan.toArray(new Subscription[plan.size()]) : EMPTY_DISPATCH_PLAN;
+    }
+
     /**
      * 从所有事件类中注销给定的订阅者
      */
     public synchronized void unregister(Object subscriber) {
-        // 获取订阅者接收的事件类型
-        List<Class<?>> subscribedTypes = typesBySubscriber.get(subscriber);
-        if (subscribedTypes != null) {
-            // 按事件类型遍历退订相关订阅方法
-            for (Class<?> eventType : subscribedTypes) {
-                unsubscribeByEventType(subscriber, eventType);
-            }
-            // 从订阅者所接收的事件类型Map中移除该订阅者
-            typesBySubscriber.remove(subscriber);
+        // 从订阅关系索引中移除该订阅者，得到它的所有订阅关系
+        List<Subscription> subscriptions = removeSubscriptions(subscriber);
+        if (subscriptions != null) {
+            unsubscribe(subscriptions);
         } else {
             logger.log(Level.WARNING, "Subscriber to unregister was not registered before: " + subscriber.getClass());
         }
     }
 
+    /**
+     * 从注册表中移除给定的订阅关系，这些订阅关系必须已经从订阅关系索引中移除
+     * 必须在同步块中调用
+     *
+     * @param subscriptions List<Subscription> 同一个订阅者的所有订阅关系
+     */
+    private void unsubscribe(List<Subscription> subscriptions) {
+        // 先将所有订阅关系标记为不活跃，已入队的事件不会再传递给该订阅者
+        for (Subscription subscription : subscriptions) {
+            subscription.active = false;
+        }
+        // 按对象标识逐个移除订阅关系，代价只与该订阅者自身的订阅数量有关（每个 O(log n) 定位加一次数组复制）
+        // 同一事件类型可能有多个订阅者方法，每个受影响的事件类型只移除一次分发计划
+        Set<Class<?>> eventTypes = null;
+        for (Subscription subscription : subscriptions) {
+            if (subscription.key != null) {
+                // 带键注册的订阅者从带键的订阅索引中退订，带键的订阅不进入分发计划
+                unsubscribeKeyedByEventType(subscription);
+            } else {
+                unsubscribeByEventType(subscription);
+                if (eventTypes == null) {
+                    eventTypes = new HashSet<>();
+                }
+                eventTypes.add(subscription.subscriberMethod.eventType);
+            }
+        }
+        if (eventTypes != null) {
+            for (Class<?> eventType : eventTypes) {
+                invalidateDispatchPlans(eventType);
+            }
+        }
+    }
+
     /**
      * 将给定事件发布到事件总线
+     * 发布到已注册的 {@link ThreadMode#POSTING} 订阅者时，稳定状态下（分发计划已缓存、订阅者方法有调用器）整个发布过程不分配内存
      */
     public void post(Object event) {
+        if (event == null) {
+            throw new NullPointerException("event must not be null");
+        }
         // 从当前线程中取得线程专属变量 PostingThreadState 实例
         PostingThreadState postingState = currentPostingThreadState.get();
-        // 拿到事件队列
-        List<Object> eventQueue = postingState.eventQueue;
-        // 将事件入队
-        eventQueue.add(event);
-
         // 判断当前线程是否在发布事件中
+        if (postingState.isPosting) {
+            // 在订阅者方法中发布的事件入队，由外层的发布循环处理
+            postingState.eventQueue.add(event);
+        } else {
+            // 不经过事件队列，直接发布
+            postQueuedEvents(postingState, event, null, 0, false);
+        }
+    }
+
+    /**
+     * 以给定的订阅键将事件发布到事件总线
+     * 事件会发布给所有不带键的订阅者（与 {@link #post(Object)} 相同），
+     * 以及通过 {@link #register(Object, Object)} 以相等的订阅键注册的订阅者；其他键的订阅者不会被遍历
+     * 同一事件类型下，不带键和带键的订阅者按优先级合并调用，相同优先级时不带键的订阅者在前
+     *
+     * @param event Object 事件
+     * @param key   Object 订阅键，不能为 null
+     */
+    public void post(Object event, Object key) {
+        if (key == null) {
+            throw new EventBusException("Key may not be null");
+        }
+        if (event == null) {
+            throw new NullPointerException("event must not be null");
+        }
+        PostingThreadState postingState = currentPostingThreadState.get();
+        if (postingState.isPosting) {
+            postingState.eventQueue.add(new QueuedEvent(event, key, 0));
+        } else {
+            postQueuedEvents(postingState, event, key, 0, false);
+        }
+    }
+
+    /**
+     * 批量发布给定的事件，效果与按顺序逐个调用 {@link #post(Object)} 相同，每个订阅者收到事件的顺序不变
+     * 整个批次只获取一次发布线程状态、只判断一次是否是主线程；
+     * {@link ThreadMode#BACKGROUND} 和 {@link ThreadMode#ASYNC} 的事件先在发布线程中暂存，
+     * 批次发布结束后在一次加锁中全部入队，并且只唤醒一次消费者
+     * 注意：暂存的事件在整个批次发布结束前不会被后台线程处理，{@link ThreadMode#POSTING} 订阅者不要等待同一批次中的后台事件；
+     * 同一批次的 {@link ThreadMode#ASYNC} 事件在线程池的一个任务中依次处理
+     * 集合中有 null 时抛出 {@link NullPointerException}，此时不会发布任何事件
+     */
+    public void postAll(Collection<?> events) {
+        // 先复制并检查全部事件，不会在入队一部分后才失败，使已入队的事件残留在当前线程的事件队列中
+        Object[] batch = events.toArray();
+        for (Object event : batch) {
+            if (event == null) {
+                throw new NullPointerException("event must not be null");
+            }
+        }
+        PostingThreadState postingState = currentPostingThreadState.get();
+        // 将全部事件入队
+        ArrayDeque<Object> eventQueue = postingState.eventQueue;
+        for (Object event : batch) {
+            eventQueue.add(event);
+        }
+
+        // 已经在发布中（在订阅者方法中调用）时，事件由外层的发布循环处理
         if (!postingState.isPosting) {
-            // 设置当前线程是否是主线程
-            postingState.isMainThread = isMainThread();
-            // 将当前线程标记为正在发布
-            postingState.isPosting = true;
-            // 如果 canceled 为 true，则是内部错误，中止状态未重置
-            if (postingState.canceled) {
-                throw new EventBusException("Internal error. Abort state was not reset");
+            postQueuedEvents(postingState, null, null, 0, true);
+        }
+    }
+
+    /**
+     * 批量发布给定的事件
+     *
+     * @see #postAll(Collection)
+     */
+    public void postAll(Object... events) {
+        postAll(Arrays.asList(events));
+    }
+
+    /**
+     * 发布给定的事件，然后循环发布当前线程事件队列中的所有事件（发布过程中订阅者方法再次发布的事件）
+     *
+     * @param postingState PostingThreadState 当前线程的发布状态
+     * @param event        Object 首先发布的事件，为 null 时只发布事件队列中的事件
+     * @param key          Object 首先发布的事件的订阅键，不带键时为 null
+     * @param sequence     long 首先发布的事件的黏性事件存入序号，不是黏性事件时为 0
+     * @param batching     boolean 是否批量发布，批量发布时后台和异步事件在全部发布结束后统一入队
+     */
+    private void postQueuedEvents(PostingThreadState postingState, Object event, Object key, long sequence,
+                                  boolean batching) {
+        // 清理已被回收的弱引用订阅者
+        expungeStaleSubscribers();
+        ArrayDeque<Object> eventQueue = postingState.eventQueue;
+        // 设置当前线程是否是主线程
+        postingState.isMainThread = isMainThread();
+        // 将当前线程标记为正在发布
+        postingState.isPosting = true;
+        postingState.batching = batching;
+        // 如果 canceled 为 true，则是内部错误，中止状态未重置
+        if (postingState.canceled) {
+            throw new EventBusException("Internal error. Abort state was not reset");
+        }
+        try {
+            if (event != null) {
+                if (eventQueue.isEmpty()) {
+                    postSingleEvent(event, key, sequence, postingState);
+                } else {
+                    // 之前的发布因异常中断，队列中还有未发布的事件，保持发布顺序
+                    eventQueue.add(key != null || sequence != 0 ? new QueuedEvent(event, key, sequence) : event);
+                }
             }
-            try {
-                // 队列不为空时，循环发布单个事件
-                while (!eventQueue.isEmpty()) {
-                    // 从事件队列中取出一个事件进行发布
-                    postSingleEvent(eventQueue.remove(0), postingState);
+            // 队列不为空时，循环发布单个事件
+            Object queued;
+            while ((queued = eventQueue.poll()) != null) {
+                if (queued instanceof QueuedEvent) {
+                    QueuedEvent queuedEvent = (QueuedEvent) queued;
+                    postSingleEvent(queuedEvent.event, queuedEvent.key, queuedEvent.stickySequence, postingState);
+                } else {
+                    postSingleEvent(queued, null, 0, postingState);
                 }
-            } finally {
-                // 发布完成后 重置状态
-                postingState.isPosting = false;
-                postingState.isMainThread = false;
             }
+        } finally {
+            // 发布完成后 重置状态
+            postingState.isPosting = false;
+            postingState.isMainThread = false;
+            if (batching) {
+                postingState.batching = false;
+                // 将暂存的事件一次性入队，即使发布过程中抛出异常，已暂存的事件也不会丢失
+                flushBatch(postingState);
+            }
+        }
+    }
+
+    /**
+     * 将批量发布过程中暂存的后台和异步事件一次性入队
+     */
+    private void flushBatch(PostingThreadState postingState) {
+        if (postingState.backgroundHead != null) {
+            PendingPost head = postingState.backgroundHead;
+            PendingPost tail = postingState.backgroundTail;
+            postingState.backgroundHead = postingState.backgroundTail = null;
+            backgroundPoster.enqueueAll(head, tail);
+        }
+        if (postingState.asyncHead != null) {
+            PendingPost head = postingState.asyncHead;
+            PendingPost tail = postingState.asyncTail;
+            int count = postingState.asyncCount;
+            postingState.asyncHead = postingState.asyncTail = null;
+            postingState.asyncCount = 0;
+            asyncPoster.enqueueAll(head, tail, count);
         }
     }
 
@@ -413,13 +1156,19 @@ public class EventBus {
      * 事件类型的最新粘性事件保存在内存中，供订阅者使用 {@link Subscribe#sticky()} 将来访问。
      */
     public void postSticky(Object event) {
-        // 加锁 监视器为黏性事件 Map
-        synchronized (stickyEvents) {
-            // 将事件存入内存中 以事件的 Class 对象为 key，事件实例为 value
-            stickyEvents.put(event.getClass(), event);
+        if (event == null) {
+            throw new NullPointerException("event must not be null");
+        }
+        // 将事件存入内存中 以事件的 Class 对象为 key，事件实例为 value，黏性事件存储内部加锁
+        // 配置了历史的事件类型在同一个同步块中存入环形缓冲区
+        long sequence = stickyEvents.put(event);
+        // 放置后应发布，以防订阅者想立即删除；带上存入序号，回放中的订阅者据此丢弃已回放过的事件
+        PostingThreadState postingState = currentPostingThreadState.get();
+        if (postingState.isPosting) {
+            postingState.eventQueue.add(new QueuedEvent(event, null, sequence));
+        } else {
+            postQueuedEvents(postingState, event, null, sequence, false);
         }
-        // 放置后应发布，以防订阅者想立即删除
-        post(event);
     }
 
     /**
@@ -428,23 +1177,18 @@ public class EventBus {
      * @see #postSticky(Object)
      */
     public <T> T getStickyEvent(Class<T> eventType) {
-        // 加锁 监视器为黏性事件 Map
-        synchronized (stickyEvents) {
-            // Map.get() 返回的是 Object 类型，所以使用了 Class.cast() 方法进行强转为调用者所表示的类型
-            return eventType.cast(stickyEvents.get(eventType));
-        }
+        // 返回的是 Object 类型，所以使用了 Class.cast() 方法进行强转为调用者所表示的类型
+        return eventType.cast(stickyEvents.get(eventType));
     }
 
     /**
      * 删除并获取给定事件类型的最近粘性事件。
-     * 同 {@link #getStickyEvent(Class)} 方法差不多，只是该方法是移除事件
+     * 同 {@link #getStickyEvent(Class)} 方法差不多，只是该方法是移除事件；该类型的黏性事件历史同时被清空
      *
      * @see #postSticky(Object)
      */
     public <T> T removeStickyEvent(Class<T> eventType) {
-        synchronized (stickyEvents) {
-            return eventType.cast(stickyEvents.remove(eventType));
-        }
+        return eventType.cast(stickyEvents.remove(eventType));
     }
 
     /**
@@ -453,30 +1197,47 @@ public class EventBus {
      * @return 如果事件匹配并且粘性事件被删除，则为 true
      */
     public boolean removeStickyEvent(Object event) {
-        // 同样的操作 对黏性事件 Map 加锁
-        synchronized (stickyEvents) {
-            Class<?> eventType = event.getClass();
-            // 获取事件类型在 Map 中的事件
-            Object existingEvent = stickyEvents.get(eventType);
-            // 进行对比
-            if (event.equals(existingEvent)) {
-                stickyEvents.remove(eventType);
-                return true;
-            } else {
-                return false;
-            }
-        }
+        // 与当前的黏性事件对比，相等时移除，同时清空该类型的黏性事件历史
+        return stickyEvents.remove(event);
     }
 
     /**
-     * 删除所有粘性事件
+     * 删除所有粘性事件，同时清空所有黏性事件历史
      */
     public void removeAllStickyEvents() {
-        synchronized (stickyEvents) {
-            stickyEvents.clear();
+        stickyEvents.clear();
+    }
+
+    /**
+     * 关闭事件总线持有的文件，见 {@link EventBusBuilder#stickyEventPersistence(java.io.File, StickyEventCodec)}
+     * 和 {@link EventBusBuilder#subscriberMetadataCache(java.io.File)}
+     * 关闭后事件总线仍然可以使用，但黏性事件只保存在内存中，不再写入文件，文件中尚未恢复的黏性事件也不再恢复；
+     * 新查找到的订阅者方法元数据不再写入磁盘缓存
+     * 不会关闭 {@link EventBusBuilder#executorService(ExecutorService)} 配置的线程池
+     */
+    public void shutdown() {
+        stickyEvents.close();
+        if (metadataCache != null) {
+            metadataCache.close();
         }
     }
 
+    /**
+     * 获取因超过 {@link EventBusBuilder#maxStickyEvents(int)} 或
+     * {@link EventBusBuilder#maxStickyEventWeight(long, StickyEventWeigher)} 而被淘汰的黏性事件数量
+     */
+    public long getStickyEventEvictionCount() {
+        return stickyEvents.getEvictionCount();
+    }
+
+    /**
+     * 获取因超过存活时间（见 {@link EventBusBuilder#stickyEventTimeToLive(long, TimeUnit)}）而被移除的黏性事件数量
+     * 过期的黏性事件在访问或淘汰时才被移除并计数
+     */
+    public long getStickyEventExpirationCount() {
+        return stickyEvents.getExpirationCount();
+    }
+
     /**
      * 给定的事件是否有订阅者
      * @param eventClass Class<?> 事件 Class 对象
@@ -491,15 +1252,16 @@ public class EventBus {
             // 遍历获取到的所有事件的类型（父类、接口等）
             for (int h = 0; h < countTypes; h++) {
                 Class<?> clazz = eventTypes.get(h);
-                CopyOnWriteArrayList<Subscription> subscriptions;
-                synchronized (this) {
-                    // 从事件类型分类的订阅者方法 Map 中获取该类型的订阅者方法
-                    subscriptions = subscriptionsByEventType.get(clazz);
-                }
+                // 从事件类型分类的订阅者方法 Map 中获取该类型的订阅者方法，无需加锁
+                CopyOnWriteArrayList<Subscription> subscriptions = subscriptionsByEventType.get(clazz);
                 // 对结果进行判断
                 if (subscriptions != null && !subscriptions.isEmpty()) {
                     return true;
                 }
+                // 带键的订阅者在退订到为空时会被移除，存在即表示有订阅者
+                if (keyedSubscriptionsByEventType.containsKey(clazz)) {
+                    return true;
+                }
             }
         }
         return false;
@@ -509,33 +1271,36 @@ public class EventBus {
      * 发布单个事件
      *
      * @param event        Object 需要发布的事件
+     * @param key          Object 订阅键，不带键时为 null
+     * @param sequence     long 黏性事件的存入序号，不是黏性事件时为 0
      * @param postingState PostingThreadState 当前线程的发布状态
      * @throws Error
      */
-    private void postSingleEvent(Object event, PostingThreadState postingState) throws Error {
+    private void postSingleEvent(Object event, Object key, long sequence, PostingThreadState postingState)
+            throws Error {
+        // 回放中的订阅者按存入序号丢弃已包含在回放快照中的黏性事件
+        postingState.stickySequence = sequence;
         // 获取事件的Class对象
         Class<?> eventClass = event.getClass();
-        // 订阅者是否找到
-        boolean subscriptionFound = false;
-        // 判断是否处理事件继承
-        if (eventInheritance) {
-            // 查找所有事件类型
-            List<Class<?>> eventTypes = lookupAllEventTypes(eventClass);
-            // 循环遍历 所有类型
-            int countTypes = eventTypes.size();
-            for (int h = 0; h < countTypes; h++) {
-                Class<?> clazz = eventTypes.get(h);
-                // 按类型发布事件
-                subscriptionFound |= postSingleEventForEventType(event, postingState, clazz);
+        // 获取分发计划，事件继承已合并在分发计划中
+        Subscription[] plan = getDispatchPlan(eventClass);
+        boolean subscriptionFound;
+        if (key == null) {
+            subscriptionFound = plan.length > 0;
+            if (subscriptionFound) {
+                // 按分发计划发布事件
+                postToSubscriptions(event, postingState, plan);
             }
         } else {
-            // 按类型发布事件
-            subscriptionFound = postSingleEventForEventType(event, postingState, eventClass);
+            // 带键发布，合并分发计划与该键的订阅者
+            subscriptionFound = postKeyedEvent(event, key, postingState, plan);
         }
-        // 如果没有找到对应的订阅关系
         if (!subscriptionFound) {
+            // 没有找到对应的订阅关系
             // 判断事件无匹配订阅函数时，是否打印信息
-            if (logNoSubscriberMessages) {
+            // 每个事件类只打印一次，之后没有订阅者的发布不再拼接日志字符串
+            if (logNoSubscriberMessages && noSubscribersLogged.get(eventClass) == null) {
+                noSubscribersLogged.put(eventClass, Boolean.TRUE);
                 logger.log(Level.FINE, "No subscribers registered for event " + eventClass);
             }
             // 判断事件无匹配订阅函数时，是否发布 NoSubscriberEvent
@@ -549,50 +1314,123 @@ public class EventBus {
     }
 
     /**
-     * 通过事件类型发布单个事件
+     * 按分发计划发布单个事件
      *
      * @param event        Object 事件
      * @param postingState PostingThreadState 当前线程的发布状态
-     * @param eventClass   eventClass 事件 Class 对象
-     * @return 是否找到订阅关系
+     * @param plan         Subscription[] 分发计划
      */
-    private boolean postSingleEventForEventType(Object event, PostingThreadState postingState, Class<?> eventClass) {
-        CopyOnWriteArrayList<Subscription> subscriptions;
-        // 加锁 监视器为当前对象
-        synchronized (this) {
-            // 获取该 Class 对象的订阅方法 List
-            subscriptions = subscriptionsByEventType.get(eventClass);
-        }
-        if (subscriptions != null && !subscriptions.isEmpty()) {
-            // 如果存在订阅方法，就进行遍历操作
-            for (Subscription subscription : subscriptions) {
-                // 将事件和订阅方法赋值给 postingState
-                postingState.event = event;
-                postingState.subscription = subscription;
-                // 是否中止
-                boolean aborted;
-                try {
-                    // 将事件发布到订阅者
-                    postToSubscription(subscription, event, postingState.isMainThread);
-                    // 是否已经取消发布
-                    aborted = postingState.canceled;
-                } finally {
-                    // 重置 postingState 状态
-                    postingState.event = null;
-                    postingState.subscription = null;
-                    postingState.canceled = false;
-                }
-                // 如果已经中止，就跳出循环
-                // TODO: 2022/5/27 为什么不在开始处判断？ 还要发布一次后再取消？
-                if (aborted) {
-                    break;
+    private void postToSubscriptions(Object event, PostingThreadState postingState, Subscription[] plan) {
+        int size = plan.length;
+        for (int i = 0; i < size; i++) {
+            Subscription subscription = plan[i];
+            // 如果已经中止，跳过同一事件类型的剩余订阅者方法
+            // 与按事件类型逐个分发时一致：中止只作用于当前事件类型，超类和接口的订阅者仍会收到事件
+            if (postToSubscription(subscription, event, postingState)) {
+                Class<?> abortedEventType = subscription.subscriberMethod.eventType;
+                while (i + 1 < size && plan[i + 1].subscriberMethod.eventType == abortedEventType) {
+                    i++;
                 }
             }
-            // 方法体结束，返回找到订阅关系
-            return true;
         }
-        // 到此步骤表示没有订阅方法，返回 false
-        return false;
+    }
+
+    /**
+     * 带键发布单个事件
+     * 按事件类型的顺序，将分发计划中该类型的连续片段与该类型、该键的订阅者按优先级合并后逐个发布
+     *
+     * @param event        Object 事件
+     * @param key          Object 订阅键
+     * @param postingState PostingThreadState 当前线程的发布状态
+     * @param plan         Subscription[] 事件的分发计划（只包含不带键的订阅者）
+     * @return boolean 是否找到订阅者
+     */
+    private boolean postKeyedEvent(Object event, Object key, PostingThreadState postingState, Subscription[] plan) {
+        Class<?> eventClass = event.getClass();
+        boolean subscriptionFound = plan.length > 0;
+        if (eventInheritance) {
+            List<Class<?>> eventTypes = lookupAllEventTypes(eventClass);
+            int countTypes = eventTypes.size();
+            int planIndex = 0;
+            for (int h = 0; h < countTypes; h++) {
+                Class<?> eventType = eventTypes.get(h);
+                Subscription[] keyed = getKeyedSubscriptions(eventType, key);
+                subscriptionFound |= keyed != null;
+                planIndex = postKeyedEventForEventType(event, postingState, eventType, plan, planIndex, keyed);
+            }
+        } else {
+            Subscription[] keyed = getKeyedSubscriptions(eventClass, key);
+            subscriptionFound |= keyed != null;
+            postKeyedEventForEventType(event, postingState, eventClass, plan, 0, keyed);
+        }
+        return subscriptionFound;
+    }
+
+    /**
+     * 获取给定事件类型、给定订阅键的订阅者，不加锁
+     */
+    private Subscription[] getKeyedSubscriptions(Class<?> eventType, Object key) {
+        Map<Object, Subscription[]> keyedSubscriptions = keyedSubscriptionsByEventType.get(eventType);
+        return keyedSubscriptions != null ? keyedSubscriptions.get(key) : null;
+    }
+
+    /**
+     * 将事件发布到单个事件类型的订阅者：分发计划中从 planIndex 开始、事件类型为 eventType 的连续片段，以及带键的订阅者
+     *
+     * @return int 分发计划中下一个事件类型片段的起始位置
+     */
+    private int postKeyedEventForEventType(Object event, PostingThreadState postingState, Class<?> eventType,
+                                           Subscription[] plan, int planIndex, Subscription[] keyed) {
+        int planEnd = planIndex;
+        while (planEnd < plan.length && plan[planEnd].subscriberMethod.eventType == eventType) {
+            planEnd++;
+        }
+        int i = planIndex;
+        int k = 0;
+        int keyedSize = keyed != null ? keyed.length : 0;
+        while (i < planEnd || k < keyedSize) {
+            Subscription subscription;
+            if (k == keyedSize || (i < planEnd
+                    && plan[i].subscriberMethod.priority >= keyed[k].subscriberMethod.priority)) {
+                subscription = plan[i++];
+            } else {
+                subscription = keyed[k++];
+            }
+            // 中止只作用于当前事件类型
+            if (postToSubscription(subscription, event, postingState)) {
+                break;
+            }
+        }
+        return planEnd;
+    }
+
+    /**
+     * 在发布循环中将事件发布到单个订阅者，维护 postingState 以支持 {@link #cancelEventDelivery(Object)}
+     *
+     * @return boolean 订阅者是否中止了事件传递
+     */
+    private boolean postToSubscription(Subscription subscription, Object event, PostingThreadState postingState) {
+        if (subscription.subscriberMethod.replay > 0) {
+            // 回放尚未结束时暂存事件，由回放线程在回放完历史后传递；丢弃已回放过的黏性事件
+            if (!subscription.replay.offer(event, postingState.stickySequence)) {
+                return false;
+            }
+        }
+        // 将事件和订阅方法赋值给 postingState
+        postingState.event = event;
+        postingState.subscription = subscription;
+        try {
+            // 将事件发布到订阅者
+            postToSubscription(subscription, event, postingState.isMainThread,
+                    postingState.batching ? postingState : null);
+            // 是否已经取消发布
+            return postingState.canceled;
+        } finally {
+            // 重置 postingState 状态
+            postingState.event = null;
+            postingState.subscription = null;
+            postingState.canceled = false;
+        }
     }
 
     /**
@@ -603,6 +1441,29 @@ public class EventBus {
      * @param isMainThread boolean 是否是主线程
      */
     private void postToSubscription(Subscription subscription, Object event, boolean isMainThread) {
+        postToSubscription(subscription, event, isMainThread, null);
+    }
+
+    /**
+     * 将事件发布到订阅者
+     *
+     * @param subscription Subscription 订阅者方法包装类
+     * @param event        Object 事件
+     * @param isMainThread boolean 是否是主线程
+     * @param batch        PostingThreadState 批量发布时用于暂存后台和异步事件的发布状态，非批量发布时为 null
+     */
+    private void postToSubscription(Subscription subscription, Object event, boolean isMainThread,
+                                    PostingThreadState batch) {
+        // 弱引用的订阅者已被回收时跳过，不加锁，订阅关系在之后的注册或发布时清理
+        SubscriberReference reference = subscription.subscriberReference;
+        if (reference != null && reference.get() == null) {
+            return;
+        }
+        // 在发布线程中先执行事件过滤器，被拒绝的事件不会入队，也不会切换线程
+        EventFilter<Object> filter = subscription.subscriberMethod.filter;
+        if (filter != null && !acceptEvent(filter, subscription, event)) {
+            return;
+        }
         // 按照订阅者方法指定的线程模式进行针对性处理
         switch (subscription.subscriberMethod.threadMode) {
             // 发布线程
@@ -612,7 +1473,8 @@ public class EventBus {
             // Android 上为主线程，非 Android 与 POSTING 一致
             case MAIN:
                 // 判断是否是主线程，如果是主线程，直接调用 void invokeSubscriber(Subscription subscription, Object event) 方法进行在当前线程中发布事件
-                if (isMainThread) {
+                // 没有主线程发布器（例如服务端配置了没有主线程）时无处切换，同样直接调用
+                if (isMainThread || mainThreadPoster == null) {
                     invokeSubscriber(subscription, event);
                 } else {
                     // 不是主线程，将该事件入队到主线程事件发布器处理
@@ -634,7 +1496,11 @@ public class EventBus {
             case BACKGROUND:
                 // 主线程发布的事件才会被入队到 backgroundPoster，非主线程发布的事件会被直接调用订阅者方法发布事件
                 if (isMainThread) {
-                    backgroundPoster.enqueue(subscription, event);
+                    if (batch != null) {
+                        batch.addBackground(obtainPendingPost(subscription, event));
+                    } else {
+                        backgroundPoster.enqueue(subscription, event);
+                    }
                 } else {
                     invokeSubscriber(subscription, event);
                 }
@@ -642,42 +1508,77 @@ public class EventBus {
             // 使用单独的线程处理，基于线程池
             case ASYNC:
                 // 入队 asyncPoster，该线程模式总是在非发布线程处理订阅者方法的调用
-                asyncPoster.enqueue(subscription, event);
+                if (batch != null) {
+                    batch.addAsync(obtainPendingPost(subscription, event));
+                } else {
+                    asyncPoster.enqueue(subscription, event);
+                }
                 break;
             default:
                 throw new IllegalStateException("Unknown thread mode: " + subscription.subscriberMethod.threadMode);
         }
     }
 
+    /**
+     * 执行事件过滤器，过滤器抛出的异常（包括 Error）与订阅者方法抛出的异常一样交给 handleSubscriberException 处理，此时不传递事件
+     */
+    private boolean acceptEvent(EventFilter<Object> filter, Subscription subscription, Object event) {
+        try {
+            return filter.accept(event);
+        } catch (Throwable e) {
+            Object subscriber = subscription.getSubscriber();
+            if (subscriber != null) {
+                handleSubscriberException(subscriber, event, e);
+            }
+            return false;
+        }
+    }
+
     /**
      * 查找所有事件类型
      * 查找给定 Class 对象的所有 Class 对象，包括超类和接口，也应该适用于接口
      * 该方法用于事件继承处理
      */
-    private static List<Class<?>> lookupAllEventTypes(Class<?> eventClass) {
-        // 加锁 监视器为 eventTypesCache
-        synchronized (eventTypesCache) {
-            // 尝试从事件类型缓存中获取该事件 Class 类型的缓存
-            List<Class<?>> eventTypes = eventTypesCache.get(eventClass);
-            // 如果为 null 表示没有缓存
-            if (eventTypes == null) {
-                eventTypes = new ArrayList<>();
-                Class<?> clazz = eventClass;
-                // 循环查找父级 Class 对象
-                while (clazz != null) {
-                    // 如果当前 clazz 不为 null，将此 Class 对象添加进 eventTypes
-                    eventTypes.add(clazz);
-                    // 对当前 Class 实现的接口进行递归添加进 eventTypes
-                    // 因为类和接口属于两条线，所以在处理每个类的时候都要在此递归处理接口类型
-                    addInterfaces(eventTypes, clazz.getInterfaces());
-                    // 将下一个需要处理的 Class 对象移至当前 Class 对象的父类
-                    clazz = clazz.getSuperclass();
+    static List<Class<?>> lookupAllEventTypes(Class<?> eventClass) {
+        // 尝试从事件类型缓存中获取该事件 Class 类型的缓存，不加锁
+        List<Class<?>> eventTypes = eventTypesCache.get(eventClass);
+        // 如果为 null 表示没有缓存
+        if (eventTypes == null) {
+            eventTypes = new ArrayList<>();
+            Class<?> clazz = eventClass;
+            // 循环查找父级 Class 对象
+            while (clazz != null) {
+                // 如果当前 clazz 不为 null，将此 Class 对象添加进 eventTypes
+                eventTypes.add(clazz);
+                // 对当前 Class 实现的接口进行递归添加进 eventTypes
+                // 因为类和接口属于两条线，所以在处理每个类的时候都要在此递归处理接口类型
+                addInterfaces(eventTypes, clazz.getInterfaces());
+                // 将下一个需要处理的 Class 对象移至当前 Class 对象的父类
+                clazz = clazz.getSuperclass();
+            }
+            // 查找结束，将结果 put 进缓存中，以便下次复用结果
+            // 多个线程同时查找时结果相同，后写入的覆盖先写入的即可
+            eventTypesCache.put(eventClass, eventTypes);
+        }
+        // 返回事件所有 Class 对象
+        return eventTypes;
+    }
+
+    /**
+     * 用生成的事件类型索引预先填充事件类型缓存，已缓存的事件类型保持不变
+     */
+    static void addEventTypes(EventTypeIndex index) {
+        Class<?>[] types = index.getEventTypes();
+        int[][] hierarchies = index.getEventTypeHierarchies();
+        for (int id = 0; id < types.length; id++) {
+            if (eventTypesCache.get(types[id]) == null) {
+                int[] ids = hierarchies[id];
+                List<Class<?>> eventTypes = new ArrayList<>(ids.length);
+                for (int typeId : ids) {
+                    eventTypes.add(types[typeId]);
                 }
-                // 查找结束，将结果 put 进缓存中，以便下次复用结果
-                eventTypesCache.put(eventClass, eventTypes);
+                eventTypesCache.put(types[id], eventTypes);
             }
-            // 返回事件所有 Class 对象
-            return eventTypes;
         }
     }
 
@@ -706,7 +1607,9 @@ public class EventBus {
         Object event = pendingPost.event;
         Subscription subscription = pendingPost.subscription;
         // 释放 pendingPost，准备下次复用
-        PendingPost.releasePendingPost(pendingPost);
+        if (pendingPostPooling) {
+            PendingPost.releasePendingPost(pendingPost);
+        }
         // 判断订阅关系是否活跃
         if (subscription.active) {
             // 调用订阅方法进行发布事件
@@ -721,12 +1624,29 @@ public class EventBus {
      * @param event        Object 事件
      */
     void invokeSubscriber(Subscription subscription, Object event) {
+        Object subscriber = subscription.getSubscriber();
+        if (subscriber == null) {
+            // 弱引用的订阅者已被回收
+            return;
+        }
+        SubscriberMethod subscriberMethod = subscription.subscriberMethod;
+        SubscriberInvoker invoker = subscriberMethod.invoker;
+        if (invoker != null) {
+            // 存在生成的调用器时直接调用订阅方法，省去反射调用、参数数组和 InvocationTargetException 包装的开销
+            try {
+                invoker.invokeSubscriber(subscriberMethod.invokerIndex, subscriber, event);
+            } catch (Throwable th) {
+                // 调用器原样抛出订阅方法的异常，与反射调用时 InvocationTargetException.getCause() 一致
+                handleSubscriberException(subscriber, event, th);
+            }
+            return;
+        }
         try {
             // 调用订阅者的订阅方法，将事件作为参数传递（反射调用）
-            subscription.subscriberMethod.method.invoke(subscription.subscriber, event);
+            subscription.subscriberMethod.method.invoke(subscriber, event);
         } catch (InvocationTargetException e) {
             // 如果产生调用目标异常，就处理该异常
-            handleSubscriberException(subscription, event, e.getCause());
+            handleSubscriberException(subscriber, event, e.getCause());
         } catch (IllegalAccessException e) {
             // 如果是非法访问 直接抛出异常
             throw new IllegalStateException("Unexpected exception", e);
@@ -736,17 +1656,17 @@ public class EventBus {
     /**
      * 处理订阅者方法异常
      *
-     * @param subscription Subscription 订阅者方法包装类
-     * @param event        Object 事件
-     * @param cause        Throwable 异常
+     * @param subscriber Object 订阅者
+     * @param event      Object 事件
+     * @param cause      Throwable 异常
      */
-    private void handleSubscriberException(Subscription subscription, Object event, Throwable cause) {
+    private void handleSubscriberException(Object subscriber, Object event, Throwable cause) {
         // 判断是否是 EventBus 内部发布的 SubscriberExceptionEvent
         if (event instanceof SubscriberExceptionEvent) {
             // 判断订阅函数执行有异常时，是否打印异常信息
             if (logSubscriberExceptions) {
                 // 不要发送另一个 SubscriberExceptionEvent 以避免无限事件递归，只需记录
-                logger.log(Level.SEVERE, "SubscriberExceptionEvent subscriber " + subscription.subscriber.getClass()
+                logger.log(Level.SEVERE, "SubscriberExceptionEvent subscriber " + subscriber.getClass()
                         + " threw an exception", cause);
                 SubscriberExceptionEvent exEvent = (SubscriberExceptionEvent) event;
                 logger.log(Level.SEVERE, "Initial event " + exEvent.causingEvent + " caused exception in "
@@ -760,12 +1680,11 @@ public class EventBus {
             // 判断订阅函数执行有异常时，是否打印异常信息
             if (logSubscriberExceptions) {
                 logger.log(Level.SEVERE, "Could not dispatch event: " + event.getClass() + " to subscribing class "
-                        + subscription.subscriber.getClass(), cause);
+                        + subscriber.getClass(), cause);
             }
             // 订阅函数执行有异常时，发布 SubscriberExceptionEvent 事件，该事件还会到该方法进行处理
             if (sendSubscriberExceptionEvent) {
-                SubscriberExceptionEvent exEvent = new SubscriberExceptionEvent(this, cause, event,
-                        subscription.subscriber);
+                SubscriberExceptionEvent exEvent = new SubscriberExceptionEvent(this, cause, event, subscriber);
                 // 发布事件
                 post(exEvent);
             }
@@ -776,8 +1695,9 @@ public class EventBus {
      * For ThreadLocal, much faster to set (and get multiple values).
      */
     final static class PostingThreadState {
-        // 事件队列
-        final List<Object> eventQueue = new ArrayList<>();
+        // 事件队列，只存放发布过程中订阅者方法再次发布的事件，最外层发布的事件不入队
+        // ArrayDeque 出队不需要移动元素，容量足够时入队、出队都不分配内存；带键的事件和黏性事件包装为 QueuedEvent
+        final ArrayDeque<Object> eventQueue = new ArrayDeque<>();
         // 是否在发布
         boolean isPosting;
         // 是否是主线程
@@ -788,6 +1708,53 @@ public class EventBus {
         Object event;
         // 是否已经取消
         boolean canceled;
+        // 正在发布的黏性事件的存入序号，不是黏性事件时为 0
+        long stickySequence;
+        // 是否在批量发布
+        boolean batching;
+        // 批量发布时暂存的后台事件链表
+        PendingPost backgroundHead;
+        PendingPost backgroundTail;
+        // 批量发布时暂存的异步事件链表及其数量
+        PendingPost asyncHead;
+        PendingPost asyncTail;
+        int asyncCount;
+
+        void addBackground(PendingPost pendingPost) {
+            if (backgroundTail != null) {
+                backgroundTail.next = pendingPost;
+            } else {
+                backgroundHead = pendingPost;
+            }
+            backgroundTail = pendingPost;
+        }
+
+        void addAsync(PendingPost pendingPost) {
+            if (asyncTail != null) {
+                asyncTail.next = pendingPost;
+            } else {
+                asyncHead = pendingPost;
+            }
+            asyncTail = pendingPost;
+            asyncCount++;
+        }
+    }
+
+    /**
+     * 事件队列中带键的事件或黏性事件，只在订阅者方法中带键发布或发布黏性事件时创建
+     */
+    static final class QueuedEvent {
+        final Object event;
+        // 订阅键，不带键时为 null
+        final Object key;
+        // 黏性事件的存入序号，不是黏性事件时为 0
+        final long stickySequence;
+
+        QueuedEvent(Object event, Object key, long stickySequence) {
+            this.event = event;
+            this.key = key;
+            this.stickySequence = stickySequence;
+        }
     }
 
     /**
@@ -799,6 +1766,20 @@ public class EventBus {
         return executorService;
     }
 
+    /**
+     * 获取一个包装了订阅者方法和事件的 PendingPost，关闭对象池时直接创建
+     *
+     * @param subscription Subscription 订阅者方法包装类
+     * @param event        Object 事件
+     * @return PendingPost
+     */
+    PendingPost obtainPendingPost(Subscription subscription, Object event) {
+        if (pendingPostPooling) {
+            return PendingPost.obtainPendingPost(subscription, event);
+        }
+        return PendingPost.newPendingPost(subscription, event);
+    }
+
     /**
      * 仅限内部使用
      */
@@ -18,10 +18,15 @@ package org.greenrobot.eventbus;
 import org.greenrobot.eventbus.android.AndroidComponents;
 import org.greenrobot.eventbus.meta.SubscriberInfoIndex;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 使用自定义参数创建 EventBus 实例，还允许安装自定义的默认 EventBus 实例。
@@ -48,6 +53,30 @@ public class EventBusBuilder {
     boolean ignoreGeneratedIndex;
     // 是否进行严格的方法验证 默认值为 false
     boolean strictMethodVerification;
+    // 是否弱引用所有订阅者 默认值为 false
+    boolean weakSubscribers;
+    // 是否复用 PendingPost 对象 默认值为 true
+    boolean pendingPostPooling = true;
+    // 后台通道数量 默认值为 1
+    int backgroundLanes = 1;
+    // 黏性事件的最大数量，0 表示不限制
+    int maxStickyEvents;
+    // 黏性事件的最大总权重，0 表示不限制
+    long maxStickyEventWeight;
+    // 黏性事件权重计算器
+    StickyEventWeigher stickyEventWeigher;
+    // 黏性事件默认的存活时间（纳秒），0 表示永不过期
+    long stickyEventTimeToLiveNanos;
+    // 按事件类型配置的黏性事件存活时间（纳秒）
+    Map<Class<?>, Long> stickyEventTimeToLiveNanosByType;
+    // 按事件类型配置的黏性事件历史大小
+    Map<Class<?>, Integer> stickyEventHistorySizes;
+    // 黏性事件持久化文件 @Nullable
+    File stickyEventFile;
+    // 黏性事件编解码器
+    StickyEventCodec stickyEventCodec;
+    // 反射查找结果的磁盘缓存文件 @Nullable
+    File subscriberMetadataCacheFile;
     // 公开线程池
     ExecutorService executorService = DEFAULT_EXECUTOR_SERVICE;
     // 跳过类的方法验证
@@ -76,7 +105,7 @@ public class EventBusBuilder {
     }
 
     /**
-     * 配置事件无匹配订阅函数时，是否打印信息
+     * 配置事件无匹配订阅函数时，是否打印信息，每个事件类只打印一次
      *
      * @param logNoSubscriberMessages boolean 默认：true
      * @return EventBusBuilder
@@ -177,6 +206,176 @@ public class EventBusBuilder {
         return this;
     }
 
+    /**
+     * 配置是否弱引用所有订阅者
+     * 为 true 时 {@link EventBus#register(Object)} 等注册方法的效果与 {@link EventBus#registerWeak(Object)} 相同：
+     * 忘记调用 {@link EventBus#unregister(Object)} 的订阅者被回收后，其订阅关系会被自动移除
+     *
+     * @param weakSubscribers boolean 默认：false
+     * @return EventBusBuilder
+     */
+    public EventBusBuilder weakSubscribers(boolean weakSubscribers) {
+        this.weakSubscribers = weakSubscribers;
+        return this;
+    }
+
+    /**
+     * 配置是否通过对象池复用 BACKGROUND、ASYNC、MAIN 等线程模式下包装事件的 {@link PendingPost} 对象
+     * 在逃逸分析和分代 GC 使短生命周期对象的分配足够便宜的 JVM 上，可以关闭对象池，每次直接创建
+     *
+     * @param pendingPostPooling boolean 默认：true
+     * @return EventBusBuilder
+     */
+    public EventBusBuilder pendingPostPooling(boolean pendingPostPooling) {
+        this.pendingPostPooling = pendingPostPooling;
+        return this;
+    }
+
+    /**
+     * 配置 {@link ThreadMode#BACKGROUND} 的后台通道数量
+     * 订阅者按对象标识固定分配到一条通道，同一个订阅者的后台订阅方法仍然串行、按发布顺序调用，
+     * 不同通道的订阅者在线程池中并行执行，一个耗时的订阅者不会再阻塞所有其他后台订阅者
+     * 大于 1 时，不同订阅者之间的后台事件不再保证全局顺序，订阅者之间共享的状态需要自行同步
+     *
+     * @param backgroundLanes int 默认：1，所有后台订阅者共用一个线程串行执行
+     * @return EventBusBuilder
+     */
+    public EventBusBuilder backgroundLanes(int backgroundLanes) {
+        if (backgroundLanes < 1) {
+            throw new IllegalArgumentException("backgroundLanes must be at least 1");
+        }
+        this.backgroundLanes = backgroundLanes;
+        return this;
+    }
+
+    /**
+     * 配置黏性事件的最大数量，超过时淘汰最近最少使用（存入或获取）的黏性事件
+     *
+     * @param maxStickyEvents int 默认：0，不限制
+     * @return EventBusBuilder
+     */
+    public EventBusBuilder maxStickyEvents(int maxStickyEvents) {
+        if (maxStickyEvents < 0) {
+            throw new IllegalArgumentException("maxStickyEvents must not be negative");
+        }
+        this.maxStickyEvents = maxStickyEvents;
+        return this;
+    }
+
+    /**
+     * 配置黏性事件的最大总权重（例如大致的字节数），超过时淘汰最近最少使用的黏性事件
+     * 最新存入的黏性事件总是保留，即使它自身的权重已经超过上限
+     *
+     * @param maxStickyEventWeight long 最大总权重，0 表示不限制
+     * @param weigher              StickyEventWeigher 权重计算器
+     * @return EventBusBuilder
+     */
+    public EventBusBuilder maxStickyEventWeight(long maxStickyEventWeight, StickyEventWeigher weigher) {
+        if (maxStickyEventWeight < 0) {
+            throw new IllegalArgumentException("maxStickyEventWeight must not be negative");
+        }
+        if (weigher == null) {
+            throw new NullPointerException("weigher must not be null");
+        }
+        this.maxStickyEventWeight = maxStickyEventWeight;
+        this.stickyEventWeigher = weigher;
+        return this;
+    }
+
+    /**
+     * 配置黏性事件默认的存活时间，从存入时开始计算，过期的黏性事件不再返回，也不再发布给新的订阅者
+     *
+     * @param duration long 存活时间，0 表示永不过期（默认）
+     * @param unit     TimeUnit 时间单位
+     * @return EventBusBuilder
+     */
+    public EventBusBuilder stickyEventTimeToLive(long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("duration must not be negative");
+        }
+        this.stickyEventTimeToLiveNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * 为给定事件类型配置黏性事件的存活时间，覆盖默认的存活时间
+     * 对该类型的子类、实现类的黏性事件同样有效，多个超类型都配置时以离事件类最近的为准
+     *
+     * @param eventType Class<?> 事件类型
+     * @param duration  long 存活时间，0 表示永不过期
+     * @param unit      TimeUnit 时间单位
+     * @return EventBusBuilder
+     */
+    public EventBusBuilder stickyEventTimeToLive(Class<?> eventType, long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("duration must not be negative");
+        }
+        if (stickyEventTimeToLiveNanosByType == null) {
+            stickyEventTimeToLiveNanosByType = new HashMap<>();
+        }
+        stickyEventTimeToLiveNanosByType.put(eventType, unit.toNanos(duration));
+        return this;
+    }
+
+    /**
+     * 为给定事件类型保存最近的 size 个黏性事件，供 {@link Subscribe#replay()} 大于 0 的订阅者在注册时回放
+     * 环形缓冲区在创建 EventBus 时预分配，之后通过 {@link EventBus#postSticky(Object)} 发布的事件都会保存；
+     * 未配置的事件类型在第一个回放订阅者注册时才开始保存，此前发布的黏性事件只保留最新的一个，
+     * 需要回放注册之前的多个事件时必须在这里配置。缓冲区大小至少为注册过的最大回放深度
+     * 只对与给定类型完全相同的事件有效，不影响 {@link EventBus#getStickyEvent(Class)} 等只针对最新事件的方法
+     * 历史与最新的黏性事件一起计入 {@link #maxStickyEvents(int)}、{@link #maxStickyEventWeight(long, StickyEventWeigher)}
+     * 和存活时间：该类型的黏性事件被淘汰、过期或移除时历史一起清空，权重为历史中所有事件的权重之和
+     *
+     * @param eventType Class<?> 事件类型
+     * @param size      int 保存的事件数量，必须大于 0
+     * @return EventBusBuilder
+     */
+    public EventBusBuilder stickyEventHistory(Class<?> eventType, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        if (stickyEventHistorySizes == null) {
+            stickyEventHistorySizes = new HashMap<>();
+        }
+        stickyEventHistorySizes.put(eventType, size);
+        return this;
+    }
+
+    /**
+     * 将黏性事件通过编解码器持久化到内存映射的文件中，{@link EventBus#postSticky(Object)} 时写入，
+     * 创建 EventBus 时只读取文件中的事件类名，某个事件类的黏性事件第一次被获取时才解码，
+     * 重启后无需重新发布即可恢复黏性事件
+     * 恢复的黏性事件的存活时间从解码时开始计算；文件打开失败时记录日志，不持久化黏性事件；
+     * 写入失败时记录日志，黏性事件仍然保存在内存中并正常发布。不再使用时调用 {@link EventBus#shutdown()} 关闭文件
+     *
+     * @param file  File 持久化文件，不存在时创建
+     * @param codec StickyEventCodec 黏性事件编解码器
+     * @return EventBusBuilder
+     */
+    public EventBusBuilder stickyEventPersistence(File file, StickyEventCodec codec) {
+        if (file == null || codec == null) {
+            throw new IllegalArgumentException("file and codec must not be null");
+        }
+        this.stickyEventFile = file;
+        this.stickyEventCodec = codec;
+        return this;
+    }
+
+    /**
+     * 将反射查找到的订阅者方法元数据缓存到给定文件中，下次启动时字节码没有变化的订阅者类不再扫描方法和解析注解
+     * 只对订阅者类及其超类都没有索引的订阅者有效；无法读取类字节码时（例如 Android）不使用缓存
+     * 缓存文件在第一次查找订阅者方法时读取，不在创建 EventBus 的线程中读取；需要避免第一次注册时读取文件，
+     * 可以先调用 {@link EventBus#prewarm(java.util.Collection, java.util.Collection)}。不再使用时调用 {@link EventBus#shutdown()}
+     * 同一个文件只应由一个 EventBus 使用
+     *
+     * @param file File 缓存文件，不存在时创建
+     * @return EventBusBuilder
+     */
+    public EventBusBuilder subscriberMetadataCache(File file) {
+        this.subscriberMetadataCacheFile = file;
+        return this;
+    }
+
     /**
      * 添加索引类
      *
@@ -200,6 +399,48 @@ public class EventBusBuilder {
         return this;
     }
 
+    /**
+     * 设置主线程支持，决定哪个线程是“主”线程，以及 {@link ThreadMode#MAIN}、{@link ThreadMode#MAIN_ORDERED} 的事件如何切换到主线程
+     * 默认情况下，Android 上使用 Android 的主线程；非 Android JVM 上没有主线程支持，所有线程都被视为主线程
+     *
+     * @param mainThreadSupport MainThreadSupport 主线程支持
+     * @return EventBusBuilder
+     */
+    public EventBusBuilder mainThreadSupport(MainThreadSupport mainThreadSupport) {
+        if (mainThreadSupport == null) {
+            throw new NullPointerException("mainThreadSupport must not be null");
+        }
+        this.mainThreadSupport = mainThreadSupport;
+        return this;
+    }
+
+    /**
+     * 服务端配置：将给定的事件循环线程作为主线程
+     * 其他线程发布的 MAIN、MAIN_ORDERED 事件通过 executor 切换到该线程调用，
+     * 只有在该线程发布的 BACKGROUND 事件才会排队到后台线程，其他线程发布时直接在发布线程中调用
+     *
+     * @param thread   Thread 事件循环线程
+     * @param executor Executor 在事件循环线程中执行任务的 Executor
+     * @return EventBusBuilder
+     */
+    public EventBusBuilder mainThread(Thread thread, Executor executor) {
+        if (thread == null || executor == null) {
+            throw new NullPointerException("thread and executor must not be null");
+        }
+        return mainThreadSupport(new ServerMainThreadSupport(thread, executor));
+    }
+
+    /**
+     * 服务端配置：没有主线程
+     * 任何线程都不是主线程：BACKGROUND 事件直接在发布线程（工作线程）中调用，不再全部排队到同一个后台线程，
+     * MAIN、MAIN_ORDERED 事件没有可以切换的线程，直接在发布线程中调用
+     *
+     * @return EventBusBuilder
+     */
+    public EventBusBuilder noMainThread() {
+        return mainThreadSupport(ServerMainThreadSupport.NONE);
+    }
+
     /**
      * 获取 Logger
      */
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+/**
+ * 事件过滤器，通过 {@link Subscribe#filter()} 为订阅者方法指定
+ * 在发布线程中、事件被交给订阅者方法对应的线程模式处理之前调用，被拒绝的事件不会入队，
+ * 因此对于大部分事件都会被忽略的 {@link ThreadMode#BACKGROUND} 和 {@link ThreadMode#ASYNC} 订阅者，
+ * 可以省去 PendingPost、队列和线程切换的开销
+ * <p>
+ * 实现类必须是 public 的，并且有一个 public 的无参构造方法；每个订阅者方法创建一个实例，多个线程会并发调用，实现必须是线程安全的
+ *
+ * @param <T> 事件类型
+ */
+public interface EventFilter<T> {
+    /**
+     * 判断是否将事件传递给订阅者方法
+     *
+     * @param event T 事件
+     * @return boolean 为 true 时传递，为 false 时跳过该订阅者方法
+     */
+    boolean accept(T event);
+
+    /**
+     * 表示不过滤的占位类型，是 {@link Subscribe#filter()} 的默认值，不会被实例化
+     */
+    final class None implements EventFilter<Object> {
+        private None() {
+        }
+
+        @Override
+        public boolean accept(Object event) {
+            return true;
+        }
+    }
+}
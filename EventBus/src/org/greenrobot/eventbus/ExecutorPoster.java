@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 基于 {@link Executor} 的事件发布器，用于将事件切换到服务端的事件循环线程
+ * 与 HandlerPoster 相同，同一时刻最多只向 Executor 提交一个任务，任务中按入队顺序调用订阅者方法，直到队列为空；
+ * 一次任务中调用订阅者方法的时间超过 maxMillisInsideRun 时重新提交任务并返回，让出事件循环线程给其他任务。
+ * 事件循环线程从不等待生产者：下一个节点尚未链接时同样重新提交任务，而不是自旋
+ */
+final class ExecutorPoster implements Runnable, Poster {
+
+    // 待发布事件队列，只有事件循环线程消费，使用无锁队列
+    private final MpscPendingPostQueue queue;
+    private final EventBus eventBus;
+    private final Executor executor;
+    // 一次任务中调用订阅者方法的最长时间（纳秒），超过后重新提交任务
+    private final long maxNanosInsideRun;
+
+    // 是否已经提交了任务，通过 CAS 保证同一时刻最多只有一个任务在消费队列
+    private final AtomicBoolean executorRunning = new AtomicBoolean();
+
+    /**
+     * @param maxMillisInsideRun int 一次任务中调用订阅者方法的最长时间（毫秒）
+     */
+    ExecutorPoster(EventBus eventBus, Executor executor, int maxMillisInsideRun) {
+        this.eventBus = eventBus;
+        this.executor = executor;
+        this.maxNanosInsideRun = TimeUnit.MILLISECONDS.toNanos(maxMillisInsideRun);
+        queue = new MpscPendingPostQueue();
+    }
+
+    /**
+     * 入队
+     *
+     * @param subscription Subscription 接收事件的订阅者方法包装类
+     * @param event        Object 将发布给订阅者的事件
+     */
+    @Override
+    public void enqueue(Subscription subscription, Object event) {
+        queue.enqueue(eventBus.obtainPendingPost(subscription, event));
+        if (!executorRunning.get() && executorRunning.compareAndSet(false, true)) {
+            execute();
+        }
+    }
+
+    /**
+     * 提交任务，调用前必须已经持有执行状态；提交失败时交出执行状态
+     */
+    private void execute() {
+        try {
+            executor.execute(this);
+        } catch (RejectedExecutionException e) {
+            executorRunning.set(false);
+            throw new EventBusException("Could not execute on main thread executor", e);
+        }
+    }
+
+    @Override
+    public void run() {
+        // 是否已经正常交出执行状态
+        boolean released = false;
+        try {
+            long started = System.nanoTime();
+            while (true) {
+                // 事件循环线程不能阻塞，只取出已链接的元素
+                PendingPost pendingPost = queue.pollIfLinked();
+                if (pendingPost == null) {
+                    if (!queue.isEmpty()) {
+                        // 生产者还没有完成链接，保持执行状态，重新提交任务稍后继续
+                        released = true;
+                        execute();
+                        return;
+                    }
+                    executorRunning.set(false);
+                    // 置为空闲前可能有事件入队但没有提交新任务，此时重新抢占继续消费
+                    if (queue.isEmpty() || !executorRunning.compareAndSet(false, true)) {
+                        released = true;
+                        return;
+                    }
+                    continue;
+                }
+                eventBus.invokeSubscriber(pendingPost);
+                if (System.nanoTime() - started >= maxNanosInsideRun) {
+                    // 超过时间片，保持执行状态，重新提交任务，让出事件循环线程
+                    released = true;
+                    execute();
+                    return;
+                }
+            }
+        } finally {
+            // 异常退出时将运行状态置为空闲
+            if (!released) {
+                executorRunning.set(false);
+            }
+        }
+    }
+}
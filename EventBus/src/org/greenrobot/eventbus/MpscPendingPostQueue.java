@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 无锁的多生产者、单消费者待发布队列，用于只有一个消费线程的发布器（{@link BackgroundPoster}、HandlerPoster）
+ * <p>
+ * 基于链表节点的 MPSC 队列（Dmitry Vyukov 的 intrusive MPSC queue）：直接使用 {@link PendingPost#next} 链接，
+ * 生产者只对队尾做一次原子交换再链接前一个节点，不加锁；消费者独占队头，不需要同步。
+ * 队列中始终有一个桩节点（stub），取出最后一个元素前把桩节点重新入队，使取出的 PendingPost 完全脱离队列，可以回收复用。
+ * <p>
+ * 消费者只在队列为空时通过 {@link LockSupport#parkNanos(Object, long)} 等待，生产者只在消费者正在等待时唤醒它，
+ * 不再每次入队都 notifyAll()。唤醒前生产者通过 CAS 取走等待线程，一次等待只有一个生产者调用 unpark，
+ * 其余生产者只是一次 volatile 读；链接节点使用有序写入（lazySet），生产者除了交换队尾之外没有额外的内存屏障
+ * <p>
+ * 与加锁的 {@link PendingPostQueue} 的吞吐量对比见 benchmark 源码集中的 PendingPostQueueBenchmark
+ * <p>
+ * {@link #poll()}、{@link #poll(int)}、{@link #pollIfLinked()}、{@link #isEmpty()} 只能由消费线程调用（同一时刻只有一个消费线程即可）
+ */
+final class MpscPendingPostQueue {
+    private static final AtomicReferenceFieldUpdater<PendingPost, PendingPost> NEXT =
+            AtomicReferenceFieldUpdater.newUpdater(PendingPost.class, PendingPost.class, "next");
+    private static final AtomicReferenceFieldUpdater<MpscPendingPostQueue, Thread> WAITER =
+            AtomicReferenceFieldUpdater.newUpdater(MpscPendingPostQueue.class, Thread.class, "waiter");
+
+    // 桩节点，不携带事件，永远不会被取出
+    private final PendingPost stub = PendingPost.newPendingPost(null, null);
+    // 队尾，生产者通过原子交换追加节点
+    private final AtomicReference<PendingPost> tail = new AtomicReference<>(stub);
+    // 队头，下一个要取出的节点或桩节点，只由消费者访问
+    private PendingPost head = stub;
+    // 正在等待的消费线程，唤醒它的生产者将其置为 null @Nullable
+    private volatile Thread waiter;
+
+    /**
+     * 入队，可以由任意线程并发调用
+     */
+    void enqueue(PendingPost pendingPost) {
+        if (pendingPost == null) {
+            throw new NullPointerException("null cannot be enqueued");
+        }
+        enqueueAll(pendingPost, pendingPost);
+    }
+
+    /**
+     * 批量入队，将已经通过 next 链接好的 PendingPost 链表追加到队尾，可以由任意线程并发调用
+     *
+     * @param first PendingPost 链表头
+     * @param last  PendingPost 链表尾
+     */
+    void enqueueAll(PendingPost first, PendingPost last) {
+        if (first == null || last == null) {
+            throw new NullPointerException("null cannot be enqueued");
+        }
+        link(first, last);
+        Thread thread = waiter;
+        if (thread != null && WAITER.compareAndSet(this, thread, null)) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void link(PendingPost first, PendingPost last) {
+        // 有序写入即可，getAndSet 之前的写入对之后读到该节点的线程可见
+        NEXT.lazySet(last, null);
+        PendingPost previous = tail.getAndSet(last);
+        // 交换队尾与链接前一个节点之间，消费者可能暂时看不到新节点，见 poll()
+        NEXT.lazySet(previous, first);
+    }
+
+    /**
+     * 取出队头的元素，有生产者已经交换了队尾但还没有链接时让出 CPU 等待它完成
+     *
+     * @return PendingPost 队列为空时返回 null
+     */
+    PendingPost poll() {
+        return poll(true);
+    }
+
+    /**
+     * 取出队头的元素，不等待正在链接的生产者，供事件循环线程使用
+     * 返回 null 时队列可能并不为空（{@link #isEmpty()} 返回 false），调用者应当稍后重试，而不是在当前线程中自旋
+     *
+     * @return PendingPost 队列为空或下一个节点尚未链接时返回 null
+     */
+    PendingPost pollIfLinked() {
+        return poll(false);
+    }
+
+    private PendingPost poll(boolean await) {
+        PendingPost first = head;
+        PendingPost next = first.next;
+        if (first == stub) {
+            if (next == null) {
+                if (tail.get() == stub || !await) {
+                    return null;
+                }
+                // 有生产者已经交换了队尾，但还没有链接，等待它完成
+                next = awaitNext(stub);
+            }
+            head = next;
+            first = next;
+            next = next.next;
+        }
+        if (next != null) {
+            head = next;
+            return first;
+        }
+        if (tail.get() != first) {
+            // 有生产者正在 first 之后追加节点
+            if (!await) {
+                return null;
+            }
+            head = awaitNext(first);
+            return first;
+        }
+        // first 是最后一个节点，重新放入桩节点，使 first 不再被队列引用
+        // 桩节点入队后队尾不再是 first，下次调用不会重复放入
+        link(stub, stub);
+        next = first.next;
+        if (next == null) {
+            if (!await) {
+                // 队头仍是 first，下次调用时再取出
+                return null;
+            }
+            next = awaitNext(first);
+        }
+        head = next;
+        return first;
+    }
+
+    /**
+     * 取出队头的元素，队列为空时最多等待给定的时间
+     *
+     * @param maxMillisToWait int 最长等待时间（毫秒）
+     * @return PendingPost 超时后队列仍为空时返回 null
+     */
+    PendingPost poll(int maxMillisToWait) throws InterruptedException {
+        PendingPost pendingPost = poll();
+        if (pendingPost != null) {
+            return pendingPost;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxMillisToWait);
+        Thread current = Thread.currentThread();
+        try {
+            while (true) {
+                // 先登记等待线程再检查队列，与生产者先入队再检查等待线程配对，不会错过唤醒
+                // 唤醒的生产者已将 waiter 置为 null，每次等待前重新登记
+                waiter = current;
+                pendingPost = poll();
+                if (pendingPost != null) {
+                    return pendingPost;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waiter = null;
+        }
+    }
+
+    /**
+     * 队列是否为空
+     */
+    boolean isEmpty() {
+        return head == stub && tail.get() == stub;
+    }
+
+    /**
+     * 等待生产者链接 node 之后的节点
+     */
+    private static PendingPost awaitNext(PendingPost node) {
+        PendingPost next;
+        while ((next = node.next) == null) {
+            Thread.yield();
+        }
+        return next;
+    }
+}
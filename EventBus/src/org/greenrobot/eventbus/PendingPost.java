@@ -15,23 +15,20 @@
  */
 package org.greenrobot.eventbus;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * {@link PendingPostQueue} 的元素抽象
  * 该类主要是将 事件、订阅关系、包装为一个类，并且做了对象的缓存池进行复用
  */
 public final class PendingPost {
 
-    // 依旧是一个对象复用池
-    private final static List<PendingPost> pendingPostPool = new ArrayList<PendingPost>();
+    // 依旧是一个对象复用池，按线程缓存，不再使用全局锁
+    private final static PendingPostPool pendingPostPool = new PendingPostPool();
     // 对应的事件
     Object event;
     // 订阅者方法包装类
     Subscription subscription;
-    // 下一个元素
-    PendingPost next;
+    // 下一个元素，volatile 供 MpscPendingPostQueue 无锁链接，在对象池中时用于链接池中的元素
+    volatile PendingPost next;
 
     /**
      * 唯一构造
@@ -53,25 +50,32 @@ public final class PendingPost {
      * @return PendingPost
      */
     public static PendingPost obtainPendingPost(Subscription subscription, Object event) {
-        // 加锁，监视器为 pendingPostPool 对象池
-        synchronized (pendingPostPool) {
-            // 获取对象池的长度
-            int size = pendingPostPool.size();
-            // 如果对象池长度大于0，证明有可以被复用的缓存对象
-            if (size > 0) {
-                // 取出一个对象并对其赋值
-                PendingPost pendingPost = pendingPostPool.remove(size - 1);
-                pendingPost.event = event;
-                pendingPost.subscription = subscription;
-                pendingPost.next = null;
-                // 返回此复用的对象
-                return pendingPost;
-            }
+        // 从当前线程的缓存中取出一个对象
+        PendingPost pendingPost = pendingPostPool.obtain();
+        // 如果取到了，证明有可以被复用的缓存对象
+        if (pendingPost != null) {
+            // 对其赋值
+            pendingPost.event = event;
+            pendingPost.subscription = subscription;
+            pendingPost.next = null;
+            // 返回此复用的对象
+            return pendingPost;
         }
         // 到此步骤表示没有可以被复用的对象，于是就进行创建新的实例
         return new PendingPost(event, subscription);
     }
 
+    /**
+     * 创建一个不经过对象池的 PendingPost，用于关闭对象池的 EventBus
+     *
+     * @param subscription Subscription 订阅者方法包装类
+     * @param event        Object 事件
+     * @return PendingPost
+     */
+    static PendingPost newPendingPost(Subscription subscription, Object event) {
+        return new PendingPost(event, subscription);
+    }
+
     /**
      * 释放 PendingPost 并加入到对象池中准备下一个事件被使用
      *
@@ -81,14 +85,8 @@ public final class PendingPost {
         // 重置状态
         pendingPost.event = null;
         pendingPost.subscription = null;
-        pendingPost.next = null;
-        // 加锁 监视器为 pendingPostPool 对象池
-        synchronized (pendingPostPool) {
-            // 不要让池无限增长，当长度小于 10000 时才进行复用，否则直接丢弃
-            if (pendingPostPool.size() < 10000) {
-                pendingPostPool.add(pendingPost);
-            }
-        }
+        // 放回当前线程的缓存，缓存满时整批交给其他线程复用，池的总大小有上限，超出时直接丢弃
+        pendingPostPool.release(pendingPost);
     }
 
-}
\ No newline at end of file
+}
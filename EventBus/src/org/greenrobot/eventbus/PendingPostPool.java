@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@link PendingPost} 对象池，不使用全局锁
+ * <p>
+ * 每个线程持有一个本地缓存，获取和释放都只访问本地缓存，不需要同步。
+ * 发布线程只获取、消费线程只释放，两者的本地缓存通过共享槽位整批交换：
+ * 本地缓存满一批时整批放入一个空槽位，本地缓存为空时从槽位中整批取出。
+ * 每个槽位存放一条通过 {@link PendingPost#next} 链接、长度固定为 {@link #BATCH_SIZE} 的链表，
+ * 放入和取出都是一次 CAS / 原子交换，平均每 {@link #BATCH_SIZE} 次获取或释放才访问一次共享状态
+ * <p>
+ * 缓存上限为每个线程 {@link #BATCH_SIZE} 个加上 {@link #SLOT_COUNT} 批，超出时直接丢弃，交给 GC 回收
+ */
+final class PendingPostPool {
+
+    // 每批的长度，也是线程本地缓存的最大长度
+    static final int BATCH_SIZE = 64;
+    // 共享槽位数量，必须是 2 的幂
+    private static final int SLOT_COUNT = 64;
+
+    // 共享槽位，元素为一整批 PendingPost 的链表头
+    private final AtomicReferenceArray<PendingPost> slots = new AtomicReferenceArray<>(SLOT_COUNT);
+    // 共享槽位中的批次数量，只用于跳过无意义的扫描，允许短暂不准确
+    private final AtomicInteger batchCount = new AtomicInteger();
+    // 线程本地缓存
+    private final ThreadLocal<LocalCache> localCaches = new ThreadLocal<LocalCache>() {
+        @Override
+        protected LocalCache initialValue() {
+            return new LocalCache();
+        }
+    };
+
+    /**
+     * 从池中获取一个 PendingPost
+     *
+     * @return PendingPost 池为空时返回 null
+     */
+    PendingPost obtain() {
+        LocalCache cache = localCaches.get();
+        if (cache.size == 0) {
+            // 本地缓存为空，从共享槽位整批取出
+            PendingPost batch = pollBatch();
+            if (batch == null) {
+                return null;
+            }
+            cache.head = batch;
+            cache.size = BATCH_SIZE;
+        }
+        PendingPost pendingPost = cache.head;
+        cache.head = pendingPost.next;
+        cache.size--;
+        return pendingPost;
+    }
+
+    /**
+     * 将已重置的 PendingPost 放回池中
+     */
+    void release(PendingPost pendingPost) {
+        LocalCache cache = localCaches.get();
+        if (cache.size == BATCH_SIZE) {
+            // 本地缓存已满，整批放入共享槽位，没有空槽位时整批丢弃
+            offerBatch(cache.head);
+            cache.head = null;
+            cache.size = 0;
+        }
+        pendingPost.next = cache.head;
+        cache.head = pendingPost;
+        cache.size++;
+    }
+
+    private PendingPost pollBatch() {
+        if (batchCount.get() == 0) {
+            return null;
+        }
+        int start = probe();
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            int index = (start + i) & (SLOT_COUNT - 1);
+            // 先读后交换，空槽位不产生写竞争
+            if (slots.get(index) != null) {
+                PendingPost batch = slots.getAndSet(index, null);
+                if (batch != null) {
+                    batchCount.decrementAndGet();
+                    return batch;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void offerBatch(PendingPost batch) {
+        if (batchCount.get() >= SLOT_COUNT) {
+            return;
+        }
+        int start = probe();
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            int index = (start + i) & (SLOT_COUNT - 1);
+            if (slots.get(index) == null && slots.compareAndSet(index, null, batch)) {
+                batchCount.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 根据当前线程选择扫描起点，使不同线程优先访问不同的槽位
+     */
+    private static int probe() {
+        long id = Thread.currentThread().getId();
+        return (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+    }
+
+    /**
+     * 线程本地缓存，通过 {@link PendingPost#next} 链接
+     */
+    static final class LocalCache {
+        PendingPost head;
+        int size;
+    }
+}
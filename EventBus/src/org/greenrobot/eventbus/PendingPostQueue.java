@@ -76,6 +76,28 @@ public final class PendingPostQueue {
         notifyAll();
     }
 
+    /**
+     * 批量入队，将已经通过 next 链接好的 PendingPost 链表追加到队尾，只唤醒一次等待的消费者
+     *
+     * @param head PendingPost 链表头
+     * @param tail PendingPost 链表尾，其 next 必须为 null
+     */
+    public synchronized void enqueueAll(PendingPost head, PendingPost tail) {
+        if (head == null || tail == null) {
+            throw new NullPointerException("null cannot be enqueued");
+        }
+        if (this.tail != null) {
+            this.tail.next = head;
+            this.tail = tail;
+        } else if (this.head == null) {
+            this.head = head;
+            this.tail = tail;
+        } else {
+            throw new IllegalStateException("Head present, but no tail");
+        }
+        notifyAll();
+    }
+
     public synchronized PendingPost poll() {
         PendingPost pendingPost = head;
         if (head != null) {
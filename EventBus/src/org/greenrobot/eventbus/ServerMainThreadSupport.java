@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 非 Android JVM（服务端）上的主线程支持
+ * <p>
+ * 主线程可以是一个指定的事件循环线程，MAIN、MAIN_ORDERED 的订阅者方法通过该线程的 {@link Executor} 调用；
+ * 也可以没有主线程（{@link #NONE}），此时任何线程都不是主线程，不存在向主线程的切换：
+ * MAIN、MAIN_ORDERED 在发布线程中直接调用，BACKGROUND 在发布线程中直接调用，不再全部排队到后台线程
+ */
+final class ServerMainThreadSupport implements MainThreadSupport {
+
+    // 一次事件循环任务中调用订阅者方法的最长时间（毫秒）
+    private static final int MAX_MILLIS_INSIDE_RUN = 10;
+
+    // 没有主线程
+    static final ServerMainThreadSupport NONE = new ServerMainThreadSupport(null, null);
+
+    // 事件循环线程 @Nullable
+    private final Thread mainThread;
+    // 在事件循环线程中执行任务的 Executor @Nullable
+    private final Executor executor;
+
+    ServerMainThreadSupport(Thread mainThread, Executor executor) {
+        this.mainThread = mainThread;
+        this.executor = executor;
+    }
+
+    /**
+     * 当前线程是否是事件循环线程，没有主线程时总是返回 false
+     */
+    @Override
+    public boolean isMainThread() {
+        return mainThread != null && Thread.currentThread() == mainThread;
+    }
+
+    /**
+     * 创建向事件循环线程切换的发布器，没有主线程时返回 null
+     * 与 Android 的 HandlerPoster 一样，一次任务中最多调用 10ms 订阅者方法
+     */
+    @Override
+    public Poster createPoster(EventBus eventBus) {
+        return executor != null ? new ExecutorPoster(eventBus, executor, MAX_MILLIS_INSIDE_RUN) : null;
+    }
+}
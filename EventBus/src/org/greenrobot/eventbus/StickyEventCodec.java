@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.io.IOException;
+
+/**
+ * 黏性事件编解码器，配合 {@link EventBusBuilder#stickyEventPersistence(java.io.File, StickyEventCodec)}
+ * 将黏性事件持久化到文件中，重启后再从文件中恢复
+ * 两个方法都在黏性事件存储的锁内调用，应尽量快速
+ */
+public interface StickyEventCodec {
+    /**
+     * 将黏性事件编码为字节
+     *
+     * @param event Object 黏性事件
+     * @return byte[] 编码后的字节，返回 null 表示不持久化该事件（同时删除文件中该事件类旧的黏性事件）
+     */
+    byte[] encode(Object event) throws IOException;
+
+    /**
+     * 从字节解码黏性事件
+     *
+     * @param eventClass Class<?> 事件类，由事件类名通过编解码器的类加载器加载
+     * @param data       byte[] {@link #encode(Object)} 编码的字节
+     * @return Object 黏性事件，必须是 eventClass 的实例
+     */
+    Object decode(Class<?> eventClass, byte[] data) throws IOException;
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 黏性事件文件，以内存映射的方式追加写入黏性事件的更新记录，见 {@link StickyEventStore}
+ * <p>
+ * 文件格式：8 字节文件头（魔数、版本），之后是连续的记录，类型字节为 0 的位置表示记录结束：
+ * <pre>
+ * byte 类型（1 存入，2 删除） | int 类名长度 | 类名（UTF-8） | int 数据长度 | 数据
+ * </pre>
+ * 每个事件类只有最后一条记录有效。写入记录时最后才写类型字节，进程在写入过程中退出时，未写完的记录在下次打开时被忽略。
+ * 写入只保证进入操作系统的页缓存，进程崩溃后可以恢复，断电时可能丢失最近的更新。
+ * 映射空间写满时先压缩，只保留每个事件类最新的记录，仍然不够时扩大文件。压缩结果不经映射写入同一目录下的临时文件，
+ * 刷新到磁盘后关闭原文件的通道，再通过 {@link File#renameTo(File)} 替换原文件（同一文件系统内的重命名是原子的）；
+ * 不能直接替换时（例如 Windows 上不能覆盖已存在的文件）先删除原文件再重命名，之后重新映射替换后的文件。
+ * 进程在压缩过程中退出时，原文件存在则保持不变，残留的临时文件在下次打开时删除；原文件已被删除时临时文件是完整的，下次打开时恢复。
+ * 注意：原文件的映射要到被回收时才释放，Windows 上映射存在时原文件可能无法删除，此时压缩失败，继续使用原文件
+ * <p>
+ * 不是线程安全的，由 {@link StickyEventStore} 在同步块中调用
+ */
+final class StickyEventFile {
+    private static final int MAGIC = 0x45425354;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int INITIAL_SIZE = 64 * 1024;
+    private static final byte RECORD_END = 0;
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_REMOVE = 2;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String TEMP_SUFFIX = ".compact";
+
+    private final File file;
+    // 文件通道和映射，压缩后换成替换后的文件的；压缩失败且无法重新打开原文件时为 null
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    // 下一条记录的写入位置
+    private int position;
+    // 有效记录的总字节数
+    private int liveBytes;
+    /**
+     * 每个事件类最新的存入记录，按写入顺序
+     * key:String 事件类名， value:Record 记录在文件中的位置
+     */
+    private final Map<String, Record> records = new LinkedHashMap<>();
+
+    StickyEventFile(File file) throws IOException {
+        this.file = file;
+        File tempFile = getTempFile();
+        if (tempFile.exists()) {
+            if (file.exists()) {
+                // 上次压缩未完成时残留的临时文件，原文件是完整的
+                if (!tempFile.delete()) {
+                    throw new IOException("Could not delete " + tempFile);
+                }
+            } else if (!tempFile.renameTo(file)) {
+                // 上次压缩删除原文件后未能重命名，临时文件已完整写入
+                throw new IOException("Could not restore " + file + " from " + tempFile);
+            }
+        }
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Sticky event file too large: " + file);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max((int) size, INITIAL_SIZE));
+        if (size >= HEADER_SIZE && buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION) {
+            // 只读取文件实际长度内的记录，文件被截断时超出部分的记录不完整
+            scan((int) size);
+        } else {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            clear();
+        }
+    }
+
+    /**
+     * 获取文件中所有有效的事件类名，按写入顺序
+     */
+    List<String> getEventClassNames() {
+        return new ArrayList<>(records.keySet());
+    }
+
+    /**
+     * 读取事件类最新的数据
+     *
+     * @return byte[] 数据，没有时返回 null
+     */
+    byte[] read(String eventClassName) {
+        Record record = records.get(eventClassName);
+        if (record == null || buffer == null) {
+            return null;
+        }
+        byte[] data = new byte[record.dataLength];
+        getBytes(record.dataOffset, data);
+        return data;
+    }
+
+    /**
+     * 追加事件类的存入记录
+     */
+    void put(String eventClassName, byte[] data) throws IOException {
+        byte[] name = eventClassName.getBytes(UTF_8);
+        int offset = append(RECORD_PUT, name, data);
+        Record previous = records.remove(eventClassName);
+        if (previous != null) {
+            liveBytes -= previous.size;
+        }
+        Record record = new Record(offset, recordSize(name.length, data.length),
+                offset + 1 + 4 + name.length + 4, data.length);
+        records.put(eventClassName, record);
+        liveBytes += record.size;
+    }
+
+    /**
+     * 追加事件类的删除记录，文件中没有该事件类时不做任何事
+     */
+    void remove(String eventClassName) throws IOException {
+        Record previous = records.get(eventClassName);
+        if (previous == null) {
+            return;
+        }
+        append(RECORD_REMOVE, eventClassName.getBytes(UTF_8), new byte[0]);
+        records.remove(eventClassName);
+        liveBytes -= previous.size;
+    }
+
+    /**
+     * 删除所有记录，不缩小文件
+     */
+    void clear() {
+        if (buffer != null) {
+            buffer.put(HEADER_SIZE, RECORD_END);
+        }
+        position = HEADER_SIZE;
+        liveBytes = 0;
+        records.clear();
+    }
+
+    /**
+     * 关闭文件通道；已有的内存映射在被回收之前仍然有效，但不应再调用其他方法
+     */
+    void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * 读取所有记录，遇到结束标记、未知的类型或不完整的记录时停止，之后的内容被丢弃
+     *
+     * @param limit int 文件的实际长度
+     */
+    private void scan(int limit) {
+        int capacity = buffer.capacity();
+        int offset = HEADER_SIZE;
+        while (offset + 1 + 4 <= limit) {
+            byte type = buffer.get(offset);
+            if (type != RECORD_PUT && type != RECORD_REMOVE) {
+                break;
+            }
+            // 类名不会为空，长度为 0 说明记录已损坏
+            int nameLength = buffer.getInt(offset + 1);
+            if (nameLength <= 0 || offset + 1 + 4 + (long) nameLength + 4 > limit) {
+                break;
+            }
+            int dataLength = buffer.getInt(offset + 1 + 4 + nameLength);
+            if (dataLength < 0 || offset + (long) recordSize(nameLength, dataLength) > limit) {
+                break;
+            }
+            byte[] name = new byte[nameLength];
+            getBytes(offset + 1 + 4, name);
+            String eventClassName = new String(name, UTF_8);
+            int size = recordSize(nameLength, dataLength);
+            Record previous = records.remove(eventClassName);
+            if (previous != null) {
+                liveBytes -= previous.size;
+            }
+            if (type == RECORD_PUT) {
+                records.put(eventClassName, new Record(offset, size, offset + 1 + 4 + nameLength + 4, dataLength));
+                liveBytes += size;
+            }
+            offset += size;
+        }
+        position = offset;
+        // 丢弃未写完的记录
+        if (position < capacity) {
+            buffer.put(position, RECORD_END);
+        }
+    }
+
+    /**
+     * 追加一条记录，最后写入类型字节
+     *
+     * @return int 记录的位置
+     */
+    private int append(byte type, byte[] name, byte[] data) throws IOException {
+        if (buffer == null) {
+            throw new IOException("Sticky event file is not open: " + file);
+        }
+        int size = recordSize(name.length, data.length);
+        ensureCapacity(size);
+        int offset = position;
+        int p = offset + 1;
+        buffer.putInt(p, name.length);
+        p += 4;
+        putBytes(p, name);
+        p += name.length;
+        buffer.putInt(p, data.length);
+        p += 4;
+        putBytes(p, data);
+        p += data.length;
+        if (p < buffer.capacity()) {
+            buffer.put(p, RECORD_END);
+        }
+        buffer.put(offset, type);
+        position = p;
+        return offset;
+    }
+
+    /**
+     * 确保还能追加 size 字节的记录：先压缩，仍然不够时扩大文件，使压缩后的记录最多占用一半的空间
+     */
+    private void ensureCapacity(int size) throws IOException {
+        if ((long) position + size <= buffer.capacity()) {
+            return;
+        }
+        long required = (long) HEADER_SIZE + liveBytes + size;
+        long capacity = buffer.capacity();
+        while (capacity < required * 2) {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("Sticky event file would exceed 2 GB");
+        }
+        compact((int) capacity);
+    }
+
+    /**
+     * 将有效记录依次复制到临时文件的文件头之后，刷新后关闭原文件的通道并用临时文件替换原文件，再重新映射
+     * 替换之前出错时删除临时文件并抛出异常，原文件、映射和记录位置都保持不变；
+     * 替换失败时重新打开原文件，记录位置保持不变并抛出异常
+     */
+    private void compact(int capacity) throws IOException {
+        List<Map.Entry<String, Record>> entries = new ArrayList<>(records.entrySet());
+        List<Record> compacted = new ArrayList<>(entries.size());
+        ByteBuffer content = ByteBuffer.allocate(HEADER_SIZE + liveBytes + 1);
+        content.putInt(MAGIC);
+        content.putInt(VERSION);
+        for (Map.Entry<String, Record> entry : entries) {
+            Record record = entry.getValue();
+            byte[] copy = new byte[record.size];
+            getBytes(record.offset, copy);
+            int offset = content.position();
+            compacted.add(new Record(offset, record.size, offset + (record.dataOffset - record.offset),
+                    record.dataLength));
+            content.put(copy);
+        }
+        int end = content.position();
+        content.put(RECORD_END);
+        content.flip();
+        // 临时文件不映射，写入后关闭即可重命名
+        File tempFile = getTempFile();
+        RandomAccessFile temp = new RandomAccessFile(tempFile, "rw");
+        try {
+            temp.setLength(0);
+            FileChannel tempChannel = temp.getChannel();
+            while (content.hasRemaining()) {
+                tempChannel.write(content);
+            }
+            tempChannel.force(true);
+            temp.close();
+        } catch (IOException | RuntimeException e) {
+            try {
+                temp.close();
+            } catch (IOException ignored) {
+            }
+            tempFile.delete();
+            throw e;
+        }
+        // 打开着的文件在 Windows 上不能被替换，先关闭原文件的通道并释放映射的引用
+        int oldCapacity = buffer.capacity();
+        channel.close();
+        channel = null;
+        buffer = null;
+        if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+            if (file.exists()) {
+                // 原文件仍然完整，继续使用原文件
+                tempFile.delete();
+                map(oldCapacity);
+            }
+            // 否则原文件已被删除，完整的临时文件在下次打开时恢复，在此之前不再写入
+            throw new IOException("Could not replace " + file + " with " + tempFile);
+        }
+        map(capacity);
+        position = end;
+        for (int i = 0; i < entries.size(); i++) {
+            entries.get(i).setValue(compacted.get(i));
+        }
+    }
+
+    /**
+     * 打开文件并映射给定大小的空间，不足时扩大文件
+     */
+    private void map(int capacity) throws IOException {
+        FileChannel openedChannel = new RandomAccessFile(file, "rw").getChannel();
+        try {
+            buffer = openedChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException | RuntimeException e) {
+            openedChannel.close();
+            throw e;
+        }
+        channel = openedChannel;
+    }
+
+    private File getTempFile() {
+        return new File(file.getPath() + TEMP_SUFFIX);
+    }
+
+    private void getBytes(int offset, byte[] dst) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.get(dst);
+    }
+
+    private void putBytes(int offset, byte[] src) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.put(src);
+    }
+
+    private static int recordSize(int nameLength, int dataLength) {
+        return 1 + 4 + nameLength + 4 + dataLength;
+    }
+
+    /**
+     * 记录在文件中的位置
+     */
+    private static final class Record {
+        // 记录的起始位置
+        final int offset;
+        // 记录的总字节数
+        final int size;
+        // 数据的起始位置
+        final int dataOffset;
+        // 数据的字节数
+        final int dataLength;
+
+        Record(int offset, int size, int dataOffset, int dataLength) {
+            this.offset = offset;
+            this.size = size;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.util.Arrays;
+
+/**
+ * 单个事件类的黏性事件历史，固定大小、预分配的环形缓冲区
+ * 按发布顺序保存该类最近的若干个黏性事件及其权重，写满后覆盖最旧的事件；最新的事件同时是 {@link StickyEventStore} 中该类的黏性事件
+ * 由 {@link StickyEventStore} 持有，所有方法都在存储的同步块中调用，缓冲区的总权重计入存储的权重上限
+ */
+final class StickyEventHistory {
+    private static final Object[] EMPTY = new Object[0];
+
+    // 环形缓冲区，容量只会增大
+    private Object[] events;
+    // 与 events 下标对应的权重
+    private long[] weights;
+    // 下一个写入位置
+    private int next;
+    // 已保存的事件数量
+    private int size;
+    // 已保存的事件的总权重
+    private long totalWeight;
+
+    StickyEventHistory(int capacity) {
+        events = new Object[capacity];
+        weights = new long[capacity];
+    }
+
+    /**
+     * 保存事件，缓冲区已满时覆盖最旧的事件
+     */
+    void add(Object event, long weight) {
+        if (size == events.length) {
+            totalWeight -= weights[next];
+        } else {
+            size++;
+        }
+        events[next] = event;
+        weights[next] = weight;
+        totalWeight += weight;
+        next = (next + 1) % events.length;
+    }
+
+    /**
+     * 移除最旧的事件，只剩最新的一个事件时不移除
+     *
+     * @return 是否移除了事件
+     */
+    boolean removeOldest() {
+        if (size <= 1) {
+            return false;
+        }
+        int oldest = (next - size + events.length) % events.length;
+        totalWeight -= weights[oldest];
+        events[oldest] = null;
+        weights[oldest] = 0;
+        size--;
+        return true;
+    }
+
+    /**
+     * 确保缓冲区至少能保存给定数量的事件，已保存的事件按顺序保留
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity <= events.length) {
+            return;
+        }
+        Object[] newEvents = new Object[capacity];
+        long[] newWeights = new long[capacity];
+        int start = (next - size + events.length) % events.length;
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % events.length;
+            newEvents[i] = events[index];
+            newWeights[i] = weights[index];
+        }
+        events = newEvents;
+        weights = newWeights;
+        next = size % capacity;
+    }
+
+    /**
+     * 获取最近的至多 count 个事件
+     *
+     * @return Object[] 事件快照，按发布顺序，最旧的在前
+     */
+    Object[] getLatest(int count) {
+        int n = Math.min(count, size);
+        if (n == 0) {
+            return EMPTY;
+        }
+        Object[] latest = new Object[n];
+        int capacity = events.length;
+        int start = (next - n + capacity) % capacity;
+        for (int i = 0; i < n; i++) {
+            latest[i] = events[(start + i) % capacity];
+        }
+        return latest;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long getTotalWeight() {
+        return totalWeight;
+    }
+
+    /**
+     * 清空事件，保留已分配的缓冲区
+     */
+    void clear() {
+        Arrays.fill(events, null);
+        Arrays.fill(weights, 0);
+        next = 0;
+        size = 0;
+        totalWeight = 0;
+    }
+}
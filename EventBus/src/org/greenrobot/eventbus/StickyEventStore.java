@@ -0,0 +1,600 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * 黏性事件存储，每个事件类保存最新的一个黏性事件
+ * 开启事件继承时，同时按事件的所有超类和接口建立索引，
+ * 黏性订阅者注册时直接查找到所有可以接收的黏性事件，不再遍历全部黏性事件逐个调用 {@link Class#isAssignableFrom(Class)}
+ * <p>
+ * 可以通过 {@link EventBusBuilder} 限制黏性事件的数量、总权重和存活时间：
+ * 存储按访问顺序排列，超过数量或总权重上限时淘汰最近最少使用的黏性事件；过期的黏性事件在访问时移除。
+ * 获取黏性事件仍然是一次哈希查找
+ * <p>
+ * 配置了 {@link EventBusBuilder#stickyEventPersistence(java.io.File, StickyEventCodec)} 时，每次存入、移除黏性事件都写入
+ * {@link StickyEventFile}；创建时只读取文件中的事件类名，某个事件类第一次被访问时才从文件中解码，
+ * 尚未解码的黏性事件不计入数量和权重上限
+ * <p>
+ * 配置了黏性事件历史的事件类（见 {@link EventBusBuilder#stickyEventHistory(Class, int)}）同时在 {@link StickyEventHistory}
+ * 中保存最近的若干个事件，与最新的黏性事件在同一个同步块中更新；历史中所有事件的权重之和作为该事件类的权重，
+ * 该事件类被淘汰、过期或移除时历史一起清空。只剩一个事件类仍超过权重上限时，从其历史中丢弃最旧的事件
+ * <p>
+ * 所有方法都在以自身为监视器的同步块中执行
+ */
+final class StickyEventStore {
+    /**
+     * key:Class<?> 事件类的 Class 对象，value: 当前最新的黏性事件及其权重、过期时间
+     * 有数量、权重上限或存活时间时按访问顺序排列，最近最少使用的在最前面
+     */
+    private final LinkedHashMap<Class<?>, Entry> stickyEvents;
+    /**
+     * 超类型索引，只在开启事件继承时维护
+     * key:Class<?> 事件类型（包括超类和接口）， value:Set<Class<?>> 存储中可以赋值给该类型的事件类，按存入顺序
+     */
+    private final Map<Class<?>, Set<Class<?>>> eventClassesBySupertype;
+
+    // 黏性事件的最大数量，0 表示不限制
+    private final int maxEntries;
+    // 黏性事件的最大总权重，0 表示不限制
+    private final long maxWeight;
+    // @Nullable 权重计算器
+    private final StickyEventWeigher weigher;
+    // 默认的存活时间（纳秒），0 表示永不过期
+    private final long timeToLiveNanos;
+    // @Nullable 按事件类型配置的存活时间（纳秒）
+    private final Map<Class<?>, Long> timeToLiveNanosByType;
+    // 是否配置了存活时间
+    private final boolean expiring;
+    // @Nullable 黏性事件持久化文件，关闭后为 null
+    private StickyEventFile file;
+    // 黏性事件编解码器
+    private final StickyEventCodec codec;
+    /**
+     * 文件中尚未解码的事件类名，按写入顺序
+     */
+    private final Set<String> pendingClassNames = new LinkedHashSet<>();
+    /**
+     * 尚未解码的事件类的超类型索引，开启事件继承时第一次按超类型查找时才加载所有事件类，之后不再加载
+     * key:Class<?> 事件类型（包括超类和接口）， value:List<Class<?>> 可以赋值给该类型的待解码事件类，按写入顺序
+     * 已解码或已被覆盖的事件类不从索引中移除，以 pendingClassNames 为准
+     */
+    private Map<Class<?>, List<Class<?>>> pendingClassesBySupertype;
+    /**
+     * 黏性事件历史
+     * key:Class<?> 事件类的 Class 对象， value:StickyEventHistory 该类最近的黏性事件的环形缓冲区
+     */
+    private final Map<Class<?>, StickyEventHistory> histories = new HashMap<>();
+    private final Logger logger;
+
+    // 当前的总权重
+    private long totalWeight;
+    // 存入序号，每次存入黏性事件时递增，供回放订阅者区分发布时间早于或晚于回放快照的黏性事件
+    private long sequence;
+    // 因超过数量或权重上限而淘汰的黏性事件数量，在同步块中写入，不加锁读取
+    private volatile long evictionCount;
+    // 因过期而移除的黏性事件数量，在同步块中写入，不加锁读取
+    private volatile long expirationCount;
+
+    StickyEventStore(EventBusBuilder builder) {
+        maxEntries = builder.maxStickyEvents;
+        maxWeight = builder.maxStickyEventWeight;
+        weigher = maxWeight > 0 ? builder.stickyEventWeigher : null;
+        timeToLiveNanos = builder.stickyEventTimeToLiveNanos;
+        timeToLiveNanosByType = builder.stickyEventTimeToLiveNanosByType != null
+                ? new HashMap<>(builder.stickyEventTimeToLiveNanosByType) : null;
+        expiring = timeToLiveNanos > 0 || timeToLiveNanosByType != null;
+        boolean accessOrder = maxEntries > 0 || maxWeight > 0 || expiring;
+        stickyEvents = new LinkedHashMap<>(16, 0.75f, accessOrder);
+        eventClassesBySupertype = builder.eventInheritance ? new HashMap<Class<?>, Set<Class<?>>>() : null;
+        if (builder.stickyEventHistorySizes != null) {
+            // 预分配配置了历史的事件类型的环形缓冲区
+            for (Map.Entry<Class<?>, Integer> entry : builder.stickyEventHistorySizes.entrySet()) {
+                histories.put(entry.getKey(), new StickyEventHistory(entry.getValue()));
+            }
+        }
+        logger = builder.getLogger();
+        codec = builder.stickyEventCodec;
+        StickyEventFile openedFile = null;
+        if (builder.stickyEventFile != null) {
+            try {
+                openedFile = new StickyEventFile(builder.stickyEventFile);
+                pendingClassNames.addAll(openedFile.getEventClassNames());
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not open sticky event file " + builder.stickyEventFile
+                        + ", sticky events will not be persisted", e);
+            }
+        }
+        file = openedFile;
+    }
+
+    /**
+     * 存入黏性事件，覆盖同一事件类的旧事件，超过上限时淘汰最近最少使用的黏性事件
+     *
+     * @return long 该事件的存入序号，大于 0
+     */
+    synchronized long put(Object event) {
+        Class<?> eventClass = event.getClass();
+        putEntry(event);
+        if (file != null) {
+            // 文件中的旧事件已被覆盖，不再需要解码
+            pendingClassNames.remove(eventClass.getName());
+            persist(event);
+        }
+        return ++sequence;
+    }
+
+    /**
+     * 获取最近一次存入的序号，与 {@link #getLatest(Class, int)} 在同一个同步块中调用时，
+     * 序号不大于它的黏性事件都已包含在快照中（或已被更新的事件覆盖）
+     */
+    synchronized long getSequence() {
+        return sequence;
+    }
+
+    private void putEntry(Object event) {
+        Class<?> eventClass = event.getClass();
+        long weight = weigher != null ? weigher.weigh(event) : 0;
+        if (weight < 0) {
+            throw new EventBusException("Negative weight " + weight + " for sticky event " + eventClass);
+        }
+        StickyEventHistory history = histories.get(eventClass);
+        if (history != null) {
+            history.add(event, weight);
+            weight = history.getTotalWeight();
+        }
+        long timeToLive = getTimeToLiveNanos(eventClass);
+        long expiresAt = timeToLive > 0 ? System.nanoTime() + timeToLive : 0;
+        Entry previous = stickyEvents.put(eventClass, new Entry(event, weight, expiresAt));
+        totalWeight += weight;
+        if (previous != null) {
+            totalWeight -= previous.weight;
+        } else {
+            addToIndex(eventClass);
+        }
+        evictIfNeeded();
+    }
+
+    /**
+     * 获取给定事件类的黏性事件，已过期时移除并返回 null
+     */
+    synchronized Object get(Class<?> eventClass) {
+        if (!pendingClassNames.isEmpty()) {
+            loadPending(eventClass);
+        }
+        Entry entry = stickyEvents.get(eventClass);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            removeEntry(eventClass);
+            expirationCount++;
+            return null;
+        }
+        return entry.event;
+    }
+
+    /**
+     * 获取可以赋值给给定事件类型的所有未过期的黏性事件，即事件类是该类型本身或其子类、实现类
+     *
+     * @return List<Object> 黏性事件的快照，可以在同步块外遍历
+     */
+    synchronized List<Object> getAssignable(Class<?> eventType) {
+        if (eventClassesBySupertype == null) {
+            Object stickyEvent = get(eventType);
+            return stickyEvent != null ? Collections.singletonList(stickyEvent) : Collections.emptyList();
+        }
+        if (!pendingClassNames.isEmpty()) {
+            loadPendingAssignable(eventType);
+        }
+        Set<Class<?>> eventClasses = eventClassesBySupertype.get(eventType);
+        if (eventClasses == null) {
+            return Collections.emptyList();
+        }
+        // 先复制，get() 可能移除过期的黏性事件并修改索引
+        List<Class<?>> candidates = new ArrayList<>(eventClasses);
+        List<Object> result = new ArrayList<>(candidates.size());
+        for (Class<?> eventClass : candidates) {
+            Object stickyEvent = get(eventClass);
+            if (stickyEvent != null) {
+                result.add(stickyEvent);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取给定事件类最近的至多 count 个黏性事件，供 {@link Subscribe#replay()} 大于 0 的订阅者回放
+     * 没有历史或历史为空时返回当前最新的黏性事件
+     *
+     * @return Object[] 事件快照，按发布顺序，最旧的在前；没有黏性事件或已过期时为空数组
+     */
+    synchronized Object[] getLatest(Class<?> eventClass, int count) {
+        Object stickyEvent = get(eventClass);
+        if (stickyEvent == null) {
+            return new Object[0];
+        }
+        StickyEventHistory history = histories.get(eventClass);
+        if (history == null || history.size() == 0) {
+            return new Object[]{stickyEvent};
+        }
+        return history.getLatest(count);
+    }
+
+    /**
+     * 从现在开始保存给定事件类的黏性事件历史，并确保至少能保存 capacity 个事件
+     * 新建的历史以当前最新的黏性事件开始，更早发布的黏性事件已被覆盖，无法恢复
+     */
+    synchronized void ensureHistory(Class<?> eventClass, int capacity) {
+        StickyEventHistory history = histories.get(eventClass);
+        if (history == null) {
+            history = new StickyEventHistory(capacity);
+            Entry entry = stickyEvents.get(eventClass);
+            if (entry != null) {
+                // 没有历史时条目的权重就是该事件的权重
+                history.add(entry.event, entry.weight);
+            }
+            histories.put(eventClass, history);
+        } else {
+            history.ensureCapacity(capacity);
+        }
+    }
+
+    /**
+     * 移除给定事件类的黏性事件
+     *
+     * @return Object 被移除的黏性事件，没有或已过期时返回 null
+     */
+    synchronized Object remove(Class<?> eventClass) {
+        if (!pendingClassNames.isEmpty()) {
+            loadPending(eventClass);
+        }
+        Entry entry = removeEntry(eventClass);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            expirationCount++;
+            return null;
+        }
+        return entry.event;
+    }
+
+    /**
+     * 当给定事件是其事件类当前的黏性事件时（equals）将其移除
+     *
+     * @return 如果事件匹配并且被删除，则为 true
+     */
+    synchronized boolean remove(Object event) {
+        Class<?> eventClass = event.getClass();
+        if (event.equals(get(eventClass))) {
+            removeEntry(eventClass);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * 删除所有黏性事件
+     */
+    synchronized void clear() {
+        if (file != null) {
+            pendingClassNames.clear();
+            pendingClassesBySupertype = null;
+            file.clear();
+        }
+        stickyEvents.clear();
+        totalWeight = 0;
+        for (StickyEventHistory history : histories.values()) {
+            history.clear();
+        }
+        if (eventClassesBySupertype != null) {
+            eventClassesBySupertype.clear();
+        }
+    }
+
+    /**
+     * 关闭黏性事件持久化文件，之后黏性事件只保存在内存中；文件中尚未解码的黏性事件不再恢复
+     */
+    synchronized void close() {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not close sticky event file", e);
+        }
+        file = null;
+        pendingClassNames.clear();
+        pendingClassesBySupertype = null;
+    }
+
+    long getEvictionCount() {
+        return evictionCount;
+    }
+
+    long getExpirationCount() {
+        return expirationCount;
+    }
+
+    /**
+     * 获取事件类的存活时间：按事件类型的顺序查找第一个配置了存活时间的类型，都没有配置时使用默认值
+     */
+    private long getTimeToLiveNanos(Class<?> eventClass) {
+        if (timeToLiveNanosByType != null) {
+            List<Class<?>> eventTypes = EventBus.lookupAllEventTypes(eventClass);
+            int countTypes = eventTypes.size();
+            for (int h = 0; h < countTypes; h++) {
+                Long timeToLive = timeToLiveNanosByType.get(eventTypes.get(h));
+                if (timeToLive != null) {
+                    return timeToLive;
+                }
+            }
+        }
+        return timeToLiveNanos;
+    }
+
+    /**
+     * 从最近最少使用的一端开始，淘汰超过数量或总权重上限的黏性事件，并移除位于该端的过期黏性事件，
+     * 使长期不被访问的过期黏性事件也不会一直占用内存；最新存入的黏性事件总是保留
+     */
+    private void evictIfNeeded() {
+        if (maxEntries <= 0 && maxWeight <= 0 && !expiring) {
+            return;
+        }
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Class<?>, Entry>> iterator = stickyEvents.entrySet().iterator();
+        while (stickyEvents.size() > 1) {
+            Map.Entry<Class<?>, Entry> eldest = iterator.next();
+            Entry entry = eldest.getValue();
+            boolean overLimit = (maxEntries > 0 && stickyEvents.size() > maxEntries)
+                    || (maxWeight > 0 && totalWeight > maxWeight);
+            if (!overLimit && !entry.isExpired(now)) {
+                break;
+            }
+            iterator.remove();
+            totalWeight -= entry.weight;
+            clearHistory(eldest.getKey());
+            removeFromIndex(eldest.getKey());
+            unpersist(eldest.getKey());
+            if (entry.isExpired(now)) {
+                expirationCount++;
+            } else {
+                evictionCount++;
+            }
+        }
+        if (maxWeight > 0 && totalWeight > maxWeight && stickyEvents.size() == 1) {
+            // 只剩一个事件类仍超过权重上限，从其历史中丢弃最旧的事件，最新的事件总是保留
+            Map.Entry<Class<?>, Entry> only = stickyEvents.entrySet().iterator().next();
+            StickyEventHistory history = histories.get(only.getKey());
+            if (history != null) {
+                Entry entry = only.getValue();
+                while (totalWeight > maxWeight && history.removeOldest()) {
+                    long weight = history.getTotalWeight();
+                    totalWeight -= entry.weight - weight;
+                    entry.weight = weight;
+                    evictionCount++;
+                }
+            }
+        }
+    }
+
+    private void clearHistory(Class<?> eventClass) {
+        StickyEventHistory history = histories.get(eventClass);
+        if (history != null) {
+            history.clear();
+        }
+    }
+
+    private Entry removeEntry(Class<?> eventClass) {
+        Entry entry = stickyEvents.remove(eventClass);
+        if (entry != null) {
+            totalWeight -= entry.weight;
+            clearHistory(eventClass);
+            removeFromIndex(eventClass);
+            unpersist(eventClass);
+        }
+        return entry;
+    }
+
+    /**
+     * 将黏性事件写入文件，编解码器返回 null 时删除文件中该事件类的旧事件
+     * 写入失败时只记录日志，内存中的黏性事件已经更新，{@link EventBus#postSticky(Object)} 仍然发布该事件；
+     * 此时尝试删除文件中该事件类的旧记录，避免重启后恢复出过时的黏性事件
+     */
+    private void persist(Object event) {
+        String eventClassName = event.getClass().getName();
+        try {
+            byte[] data = codec.encode(event);
+            if (data != null) {
+                file.put(eventClassName, data);
+            } else {
+                file.remove(eventClassName);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not persist sticky event " + eventClassName, e);
+            unpersist(event.getClass());
+        }
+    }
+
+    /**
+     * 在文件中删除事件类的黏性事件，失败时只记录日志
+     */
+    private void unpersist(Class<?> eventClass) {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.remove(eventClass.getName());
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not remove persisted sticky event " + eventClass.getName(), e);
+        }
+    }
+
+    /**
+     * 事件类在文件中有尚未解码的黏性事件时，解码并放入存储
+     */
+    private void loadPending(Class<?> eventClass) {
+        if (pendingClassNames.remove(eventClass.getName())) {
+            load(eventClass);
+        }
+    }
+
+    /**
+     * 解码文件中所有可以赋值给给定事件类型的黏性事件
+     * 待解码的事件类名只在第一次调用时加载一次并按超类型建立索引，之后每次只是一次哈希查找；无法加载的事件类不再尝试
+     */
+    private void loadPendingAssignable(Class<?> eventType) {
+        if (pendingClassesBySupertype == null) {
+            indexPending();
+        }
+        List<Class<?>> candidates = pendingClassesBySupertype.remove(eventType);
+        if (candidates != null) {
+            for (Class<?> eventClass : candidates) {
+                if (pendingClassNames.remove(eventClass.getName())) {
+                    load(eventClass);
+                }
+            }
+        }
+        if (pendingClassNames.isEmpty()) {
+            pendingClassesBySupertype = null;
+        }
+    }
+
+    /**
+     * 加载所有待解码的事件类，按它们的超类和接口建立索引
+     */
+    private void indexPending() {
+        pendingClassesBySupertype = new HashMap<>();
+        ClassLoader classLoader = codec.getClass().getClassLoader();
+        Iterator<String> iterator = pendingClassNames.iterator();
+        while (iterator.hasNext()) {
+            String eventClassName = iterator.next();
+            Class<?> eventClass;
+            try {
+                eventClass = Class.forName(eventClassName, false, classLoader);
+            } catch (ClassNotFoundException | LinkageError e) {
+                iterator.remove();
+                logger.log(Level.WARNING, "Could not load class of persisted sticky event " + eventClassName, e);
+                continue;
+            }
+            List<Class<?>> eventTypes = EventBus.lookupAllEventTypes(eventClass);
+            int countTypes = eventTypes.size();
+            for (int h = 0; h < countTypes; h++) {
+                Class<?> eventType = eventTypes.get(h);
+                List<Class<?>> eventClasses = pendingClassesBySupertype.get(eventType);
+                if (eventClasses == null) {
+                    eventClasses = new ArrayList<>();
+                    pendingClassesBySupertype.put(eventType, eventClasses);
+                }
+                eventClasses.add(eventClass);
+            }
+        }
+    }
+
+    /**
+     * 从文件中解码事件类的黏性事件并放入存储，不再写回文件；解码失败时记录日志并丢弃
+     */
+    private void load(Class<?> eventClass) {
+        byte[] data = file.read(eventClass.getName());
+        if (data == null) {
+            return;
+        }
+        Object event;
+        try {
+            event = codec.decode(eventClass, data);
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Could not decode persisted sticky event " + eventClass.getName(), e);
+            return;
+        }
+        if (event == null || event.getClass() != eventClass) {
+            logger.log(Level.WARNING, "Codec returned " + event + " for persisted sticky event "
+                    + eventClass.getName());
+            return;
+        }
+        putEntry(event);
+    }
+
+    private void addToIndex(Class<?> eventClass) {
+        if (eventClassesBySupertype == null) {
+            return;
+        }
+        // 新的事件类，添加到它的所有超类和接口的索引中
+        List<Class<?>> eventTypes = EventBus.lookupAllEventTypes(eventClass);
+        int countTypes = eventTypes.size();
+        for (int h = 0; h < countTypes; h++) {
+            Class<?> eventType = eventTypes.get(h);
+            Set<Class<?>> eventClasses = eventClassesBySupertype.get(eventType);
+            if (eventClasses == null) {
+                eventClasses = new LinkedHashSet<>();
+                eventClassesBySupertype.put(eventType, eventClasses);
+            }
+            eventClasses.add(eventClass);
+        }
+    }
+
+    private void removeFromIndex(Class<?> eventClass) {
+        if (eventClassesBySupertype == null) {
+            return;
+        }
+        List<Class<?>> eventTypes = EventBus.lookupAllEventTypes(eventClass);
+        int countTypes = eventTypes.size();
+        for (int h = 0; h < countTypes; h++) {
+            Class<?> eventType = eventTypes.get(h);
+            Set<Class<?>> eventClasses = eventClassesBySupertype.get(eventType);
+            if (eventClasses != null) {
+                eventClasses.remove(eventClass);
+                if (eventClasses.isEmpty()) {
+                    eventClassesBySupertype.remove(eventType);
+                }
+            }
+        }
+    }
+
+    /**
+     * 存储中的黏性事件
+     */
+    private static final class Entry {
+        final Object event;
+        // 权重，有黏性事件历史时是历史中所有事件的权重之和，没有配置权重上限时为 0
+        long weight;
+        // 过期时间（System.nanoTime()），0 表示永不过期
+        final long expiresAt;
+
+        Entry(Object event, long weight, long expiresAt) {
+            this.event = event;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != 0 && now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+/**
+ * 黏性事件权重计算器，通过 {@link EventBusBuilder#maxStickyEventWeight(long, StickyEventWeigher)} 配置
+ * 权重通常是事件大致占用的字节数，黏性事件的总权重超过上限时按最近最少使用的顺序淘汰
+ */
+public interface StickyEventWeigher {
+    /**
+     * 计算黏性事件的权重，在存入黏性事件时调用一次
+     *
+     * @param event Object 黏性事件
+     * @return long 权重，不能为负数
+     */
+    long weigh(Object event);
+}
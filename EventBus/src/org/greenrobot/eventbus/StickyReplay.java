@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.util.Arrays;
+
+/**
+ * 回放订阅者的回放状态，在订阅关系对发布线程可见之前创建
+ * 回放结束之前，发布线程传递给该订阅者的事件不直接调用订阅者方法，而是连同黏性事件的存入序号一起暂存，
+ * 由回放线程在回放完历史之后按到达顺序传递。存入序号不大于回放快照序号的同类型黏性事件已包含在快照中（或比快照更旧），
+ * 无论在回放期间还是之后到达都不再传递。这样并发的 {@link EventBus#postSticky(Object)} 既不会重复传递，
+ * 也不会先于更旧的历史事件到达
+ */
+final class StickyReplay {
+    private static final int INITIAL_CAPACITY = 4;
+
+    // 回放的事件类型，只有与之完全相同的黏性事件包含在快照中
+    private final Class<?> eventType;
+    // 回放快照的存入序号，在 finished 之前写入
+    private long sequence;
+    // 回放是否已结束，结束后不再暂存事件
+    private volatile boolean finished;
+    // 暂存的事件，按到达顺序，回放结束后为 null
+    private Object[] events;
+    // 与 events 下标对应的黏性事件存入序号，不是通过 postSticky 发布的事件为 0
+    private long[] sequences;
+    // 暂存的事件数量
+    private int size;
+
+    StickyReplay(Class<?> eventType) {
+        this.eventType = eventType;
+        events = new Object[INITIAL_CAPACITY];
+        sequences = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * 发布线程传递事件之前调用：回放结束之前暂存事件；回放结束之后丢弃已包含在快照中的黏性事件
+     *
+     * @param event         Object 事件
+     * @param eventSequence long 黏性事件的存入序号，不是通过 postSticky 发布的事件为 0
+     * @return boolean 是否由调用者直接传递
+     */
+    boolean offer(Object event, long eventSequence) {
+        if (finished) {
+            // 回放结束后 sequence 不再改变，不加锁
+            return !isReplayed(event, eventSequence);
+        }
+        synchronized (this) {
+            if (finished) {
+                return !isReplayed(event, eventSequence);
+            }
+            if (size == events.length) {
+                events = Arrays.copyOf(events, size * 2);
+                sequences = Arrays.copyOf(sequences, size * 2);
+            }
+            events[size] = event;
+            sequences[size] = eventSequence;
+            size++;
+            return false;
+        }
+    }
+
+    /**
+     * 记录回放快照的存入序号，在获取快照的同一个同步块中调用
+     */
+    synchronized void start(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * 取出暂存的事件，没有暂存的事件时结束回放
+     *
+     * @return Object[] 需要传递的事件，按到达顺序，已包含在快照中的黏性事件已被丢弃；回放已结束时为 null
+     */
+    synchronized Object[] drain() {
+        if (size == 0) {
+            finish();
+            return null;
+        }
+        Object[] drained = new Object[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (!isReplayed(events[i], sequences[i])) {
+                drained[count++] = events[i];
+            }
+            events[i] = null;
+        }
+        size = 0;
+        return count == drained.length ? drained : Arrays.copyOf(drained, count);
+    }
+
+    /**
+     * 结束回放并丢弃剩余的暂存事件，回放正常结束时没有剩余事件，回放因异常中断时调用者不再传递这些事件
+     */
+    synchronized void finish() {
+        events = null;
+        sequences = null;
+        size = 0;
+        finished = true;
+    }
+
+    private boolean isReplayed(Object event, long eventSequence) {
+        return eventSequence != 0 && eventSequence <= sequence && event.getClass() == eventType;
+    }
+}
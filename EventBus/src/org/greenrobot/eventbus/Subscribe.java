@@ -49,5 +49,22 @@ public @interface Subscribe {
      * 注意：优先级不影响具有不同 {@link ThreadMode} 的订阅者之间的传递顺序！
      */
     int priority() default 0;
+
+    /**
+     * 事件过滤器，在发布线程中、事件入队之前判断是否将事件传递给该订阅者，见 {@link EventFilter}
+     * 过滤器接受的事件类型（EventFilter 的类型参数）必须是订阅者方法事件类型本身或其超类型，注册时检查
+     * 默认值为 {@link EventFilter.None}，表示不过滤
+     */
+    Class<? extends EventFilter<?>> filter() default EventFilter.None.class;
+
+    /**
+     * 黏性事件的回放深度，只在 {@link #sticky()} 为 true 时有效，默认值为 0
+     * 大于 0 时，注册时按发布顺序将该事件类型最近的至多 replay 个黏性事件（使用 {@link EventBus#postSticky(Object)} 发布）
+     * 逐个传递给该订阅者，而不是只传递最新的一个；只回放与接收的事件类型完全相同的事件
+     * 只有通过 {@link EventBusBuilder#stickyEventHistory(Class, int)} 配置的事件类型从创建 EventBus 起保存历史；
+     * 其他事件类型在第一个回放订阅者注册时才开始保存，此前发布的黏性事件只保留最新的一个
+     * 回放与并发的 {@link EventBus#postSticky(Object)} 互不重复，回放结束前发布的事件在历史之后按顺序传递
+     */
+    int replay() default 0;
 }
 
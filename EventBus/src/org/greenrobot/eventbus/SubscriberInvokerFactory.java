@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.greenrobot.eventbus.android.AndroidDependenciesDetector;
+import org.greenrobot.eventbus.meta.SubscriberInvoker;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.logging.Level;
+
+/**
+ * 运行时订阅者方法调用器工厂
+ * 为反射查找到的订阅者方法通过 {@link LambdaMetafactory} 生成一个直接调用订阅方法的函数式对象，
+ * 使没有索引类的订阅者也能避免每次发布事件时 {@link Method#invoke(Object, Object...)} 的反射开销
+ * <p>
+ * 只在非 Android 的 JVM 上启用：Android 上 java.lang.invoke 不可用或不完整，此时返回 null，继续使用反射调用
+ * 无法生成时（类加载器不可见、非 public 的订阅者类等）同样返回 null，并记录一条日志，调用方应缓存失败结果，不再重试
+ */
+final class SubscriberInvokerFactory {
+
+    // 当前运行环境是否支持 LambdaMetafactory
+    private static final boolean AVAILABLE = isLambdaMetafactoryAvailable();
+
+    private SubscriberInvokerFactory() {
+    }
+
+    /**
+     * 为订阅者方法创建调用器
+     *
+     * @param method    Method 订阅者方法
+     * @param eventType Class<?> 事件类型 Class 对象
+     * @param logger    Logger 无法生成时记录原因
+     * @return SubscriberInvoker 调用器，不支持时返回 null，调用方应回退到反射调用
+     */
+    static SubscriberInvoker create(Method method, Class<?> eventType, Logger logger) {
+        if (!AVAILABLE) {
+            return null;
+        }
+        Class<?> declaringClass = method.getDeclaringClass();
+        // 生成的类定义在 EventBus 的类加载器中，订阅者类和事件类必须对其可见（例如插件类加载器中的类就不可见）
+        if (!isVisible(declaringClass) || !isVisible(eventType)) {
+            logger.log(Level.INFO, "Subscriber method " + method + " is not visible to the class loader of EventBus,"
+                    + " falling back to reflection");
+            return null;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle target = lookup.unreflect(method);
+            CallSite callSite = LambdaMetafactory.metafactory(lookup, "invoke",
+                    MethodType.methodType(DirectInvoker.class),
+                    MethodType.methodType(void.class, Object.class, Object.class),
+                    target,
+                    MethodType.methodType(void.class, declaringClass, eventType));
+            DirectInvoker directInvoker = (DirectInvoker) callSite.getTarget().invokeWithArguments();
+            return new LambdaSubscriberInvoker(directInvoker);
+        } catch (Throwable th) {
+            // 无法访问或无法生成（例如 public 方法所在的订阅者类不是 public），回退到反射调用
+            logger.log(Level.INFO, "Could not generate invoker for subscriber method " + method
+                    + ", falling back to reflection", th);
+            return null;
+        }
+    }
+
+    /**
+     * 判断给定的 Class 对象是否能被 EventBus 的类加载器解析
+     */
+    private static boolean isVisible(Class<?> clazz) {
+        try {
+            return Class.forName(clazz.getName(), false, SubscriberInvokerFactory.class.getClassLoader()) == clazz;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static boolean isLambdaMetafactoryAvailable() {
+        if (AndroidDependenciesDetector.isAndroidSDKAvailable()) {
+            return false;
+        }
+        try {
+            Class.forName("java.lang.invoke.LambdaMetafactory");
+            return true;
+        } catch (Throwable th) {
+            return false;
+        }
+    }
+
+    /**
+     * 由 {@link LambdaMetafactory} 实现的函数式接口，实现类中直接调用订阅者方法
+     */
+    interface DirectInvoker {
+        void invoke(Object subscriber, Object event) throws Throwable;
+    }
+
+    /**
+     * 将 {@link DirectInvoker} 适配为 {@link SubscriberInvoker}，每个调用器只对应一个方法，忽略方法序号
+     */
+    static final class LambdaSubscriberInvoker implements SubscriberInvoker {
+        private final DirectInvoker directInvoker;
+
+        LambdaSubscriberInvoker(DirectInvoker directInvoker) {
+            this.directInvoker = directInvoker;
+        }
+
+        @Override
+        public void invokeSubscriber(int methodIndex, Object subscriber, Object event) throws Throwable {
+            directInvoker.invoke(subscriber, event);
+        }
+    }
+}
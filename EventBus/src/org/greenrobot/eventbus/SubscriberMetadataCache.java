@@ -0,0 +1,385 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * 反射查找到的订阅者方法元数据的磁盘缓存，见 {@link EventBusBuilder#subscriberMetadataCache(File)}
+ * 以订阅者类名为 key，保存类字节码的指纹和每个订阅者方法的（声明类、方法名、事件类型、线程模式、优先级、黏性、过滤器、回放深度），
+ * 下次启动时字节码没有变化的类直接按方法名取得订阅者方法，不再调用 getDeclaredMethods 并解析注解
+ * <p>
+ * 文件格式：int 魔数，int 版本，之后是连续的记录，每个类只有最后一条记录有效；新的记录追加写入，
+ * 读取时遇到不完整的记录即停止，过时的记录过多时在加载时重写文件。同一个文件只应由一个 EventBus 使用
+ * <p>
+ * 文件在第一次查找订阅者方法时才读取，而不是在创建 EventBus 时：创建 EventBus 的线程（通常是主线程）不做文件读写，
+ * 代价是第一次注册的线程要读取整个文件；可以用 {@link EventBus#prewarm(java.util.Collection, java.util.Collection)}
+ * 在后台线程中完成读取。追加写入的输出流由 {@link #close()} 关闭，见 {@link EventBus#shutdown()}
+ * <p>
+ * 指纹按类计算并在进程内缓存，同一个超类只计算一次。类来自 jar 时直接使用 jar 目录中记录的 CRC32 和大小，不读取字节码；
+ * 来自目录时使用 class 文件的大小和修改时间，重新编译后修改时间变化即视为不同（可能多一次重新查找，不会使用过时的元数据）；
+ * 其他情况读取字节码计算 CRC32
+ */
+final class SubscriberMetadataCache {
+    /** 无法计算指纹（例如 Android 上读取不到类的字节码）时的指纹 */
+    static final long NO_FINGERPRINT = -1;
+
+    private static final int MAGIC = 0x45424d43;
+    private static final int VERSION = 2;
+
+    /**
+     * 单个类的指纹缓存，value 为 {@link #NO_FINGERPRINT} 时表示无法计算
+     */
+    private static final ClassCache<Long> CLASS_FINGERPRINTS = ClassCache.create();
+
+    private final File file;
+    private final Logger logger;
+    /**
+     * key:String 订阅者类名， value:Entry 该类的指纹和订阅者方法元数据
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // 追加写入的输出流，第一次写入时打开，在以自身为监视器的同步块中使用
+    private DataOutputStream out;
+    // 写入失败或关闭后不再写入
+    private boolean failed;
+    // 文件是否已经读取，第一次查找时在以自身为监视器的同步块中读取
+    private volatile boolean loaded;
+
+    SubscriberMetadataCache(File file, Logger logger) {
+        this.file = file;
+        this.logger = logger;
+    }
+
+    /**
+     * 获取订阅者类的方法元数据
+     *
+     * @param fingerprint long 当前的指纹，与缓存的指纹不一致时视为没有缓存
+     * @return List<MethodEntry> 订阅者方法元数据，没有缓存时返回 null
+     */
+    List<MethodEntry> get(Class<?> subscriberClass, long fingerprint) {
+        ensureLoaded();
+        Entry entry = entries.get(subscriberClass.getName());
+        return entry != null && entry.fingerprint == fingerprint ? entry.methods : null;
+    }
+
+    /**
+     * 保存订阅者类的方法元数据，追加写入文件
+     */
+    void put(Class<?> subscriberClass, long fingerprint, List<SubscriberMethod> subscriberMethods) {
+        // 加载时可能重写文件，必须在打开追加写入的输出流之前完成
+        ensureLoaded();
+        List<MethodEntry> methods = new ArrayList<>(subscriberMethods.size());
+        for (SubscriberMethod subscriberMethod : subscriberMethods) {
+            methods.add(new MethodEntry(subscriberMethod));
+        }
+        Entry entry = new Entry(subscriberClass.getName(), fingerprint, Collections.unmodifiableList(methods));
+        entries.put(entry.className, entry);
+        synchronized (this) {
+            if (failed) {
+                return;
+            }
+            try {
+                if (out == null) {
+                    boolean empty = !file.exists() || file.length() == 0;
+                    out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+                    if (empty) {
+                        out.writeInt(MAGIC);
+                        out.writeInt(VERSION);
+                    }
+                }
+                entry.writeTo(out);
+                out.flush();
+            } catch (IOException e) {
+                failed = true;
+                logger.log(Level.WARNING, "Could not write subscriber metadata cache " + file, e);
+            }
+        }
+    }
+
+    /**
+     * 关闭追加写入的输出流，之后查找到的订阅者方法不再写入文件
+     */
+    synchronized void close() {
+        failed = true;
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not close subscriber metadata cache " + file, e);
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * 计算类及其超类的指纹
+     *
+     * @param classes List<Class<?>> 订阅者类及其需要查找订阅者方法的超类
+     * @return long 指纹，任何一个类的指纹无法计算时返回 {@link #NO_FINGERPRINT}
+     */
+    static long fingerprint(List<Class<?>> classes) {
+        CRC32 crc = new CRC32();
+        for (Class<?> clazz : classes) {
+            long fingerprint = getClassFingerprint(clazz);
+            if (fingerprint == NO_FINGERPRINT) {
+                return NO_FINGERPRINT;
+            }
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                crc.update((int) (fingerprint >>> shift));
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static long getClassFingerprint(Class<?> clazz) {
+        Long fingerprint = CLASS_FINGERPRINTS.get(clazz);
+        if (fingerprint == null) {
+            fingerprint = computeClassFingerprint(clazz);
+            CLASS_FINGERPRINTS.put(clazz, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * 计算单个类的指纹：jar 中的类使用 jar 目录中的 CRC32 和大小，目录中的类使用文件大小和修改时间，其他情况读取字节码
+     */
+    private static long computeClassFingerprint(Class<?> clazz) {
+        String resource = clazz.getName().replace('.', '/') + ".class";
+        ClassLoader classLoader = clazz.getClassLoader();
+        URL url = classLoader != null ? classLoader.getResource(resource) : ClassLoader.getSystemResource(resource);
+        if (url == null) {
+            return NO_FINGERPRINT;
+        }
+        InputStream in = null;
+        try {
+            if ("file".equals(url.getProtocol())) {
+                File classFile = new File(url.toURI());
+                long length = classFile.length();
+                long lastModified = classFile.lastModified();
+                if (length > 0 && lastModified > 0) {
+                    return (length << 40) ^ lastModified;
+                }
+            }
+            URLConnection connection = url.openConnection();
+            if (connection instanceof JarURLConnection) {
+                JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+                if (entry != null && entry.getCrc() != -1) {
+                    return (entry.getSize() << 32) ^ entry.getCrc();
+                }
+            }
+            in = connection.getInputStream();
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+            return crc.getValue();
+        } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+            return NO_FINGERPRINT;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    load();
+                    loaded = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取文件中的所有记录；文件格式不符时清空文件，过时的记录过多时重写文件
+     */
+    private void load() {
+        if (!file.exists() || file.length() == 0) {
+            return;
+        }
+        int records = 0;
+        boolean valid = false;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            valid = in.readInt() == MAGIC && in.readInt() == VERSION;
+            while (valid) {
+                Entry entry = Entry.readFrom(in);
+                entries.put(entry.className, entry);
+                records++;
+            }
+        } catch (EOFException e) {
+            // 文件结束，或者最后一条记录没有写完
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Could not read subscriber metadata cache " + file, e);
+        } finally {
+            closeQuietly(in);
+        }
+        if (!valid || records > entries.size() * 2 + 16) {
+            rewrite();
+        }
+    }
+
+    /**
+     * 只写入每个类最新的记录，先写入临时文件再替换
+     */
+    private void rewrite() {
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream tempOut = null;
+        try {
+            tempOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            tempOut.writeInt(MAGIC);
+            tempOut.writeInt(VERSION);
+            for (Entry entry : entries.values()) {
+                entry.writeTo(tempOut);
+            }
+            tempOut.close();
+            tempOut = null;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not rewrite subscriber metadata cache " + file, e);
+            closeQuietly(tempOut);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+            logger.log(Level.WARNING, "Could not replace subscriber metadata cache " + file);
+            temp.delete();
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 一个订阅者类的缓存记录
+     */
+    private static final class Entry {
+        final String className;
+        final long fingerprint;
+        final List<MethodEntry> methods;
+
+        Entry(String className, long fingerprint, List<MethodEntry> methods) {
+            this.className = className;
+            this.fingerprint = fingerprint;
+            this.methods = methods;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeUTF(className);
+            out.writeLong(fingerprint);
+            out.writeInt(methods.size());
+            for (MethodEntry method : methods) {
+                out.writeUTF(method.declaringClassName);
+                out.writeUTF(method.methodName);
+                out.writeUTF(method.eventTypeName);
+                out.writeUTF(method.threadMode.name());
+                out.writeInt(method.priority);
+                out.writeBoolean(method.sticky);
+                out.writeUTF(method.filterClassName != null ? method.filterClassName : "");
+                out.writeInt(method.replay);
+            }
+        }
+
+        static Entry readFrom(DataInputStream in) throws IOException {
+            String className = in.readUTF();
+            long fingerprint = in.readLong();
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Corrupt subscriber metadata cache record for " + className);
+            }
+            List<MethodEntry> methods = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String declaringClassName = in.readUTF();
+                String methodName = in.readUTF();
+                String eventTypeName = in.readUTF();
+                ThreadMode threadMode = ThreadMode.valueOf(in.readUTF());
+                int priority = in.readInt();
+                boolean sticky = in.readBoolean();
+                String filterClassName = in.readUTF();
+                int replay = in.readInt();
+                methods.add(new MethodEntry(declaringClassName, methodName, eventTypeName, threadMode, priority,
+                        sticky, filterClassName.length() == 0 ? null : filterClassName, replay));
+            }
+            return new Entry(className, fingerprint, Collections.unmodifiableList(methods));
+        }
+    }
+
+    /**
+     * 一个订阅者方法的元数据，类以类名保存
+     */
+    static final class MethodEntry {
+        final String declaringClassName;
+        final String methodName;
+        final String eventTypeName;
+        final ThreadMode threadMode;
+        final int priority;
+        final boolean sticky;
+        // @Nullable 事件过滤器类名
+        final String filterClassName;
+        final int replay;
+
+        MethodEntry(SubscriberMethod subscriberMethod) {
+            this(subscriberMethod.method.getDeclaringClass().getName(), subscriberMethod.method.getName(),
+                    subscriberMethod.eventType.getName(), subscriberMethod.threadMode, subscriberMethod.priority,
+                    subscriberMethod.sticky,
+                    subscriberMethod.filter != null ? subscriberMethod.filter.getClass().getName() : null,
+                    subscriberMethod.replay);
+        }
+
+        MethodEntry(String declaringClassName, String methodName, String eventTypeName, ThreadMode threadMode,
+                    int priority, boolean sticky, String filterClassName, int replay) {
+            this.declaringClassName = declaringClassName;
+            this.methodName = methodName;
+            this.eventTypeName = eventTypeName;
+            this.threadMode = threadMode;
+            this.priority = priority;
+            this.sticky = sticky;
+            this.filterClassName = filterClassName;
+            this.replay = replay;
+        }
+    }
+}
@@ -15,7 +15,12 @@
  */
 package org.greenrobot.eventbus;
 
+import org.greenrobot.eventbus.meta.SubscriberInvoker;
+
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 
 /**
  * 订阅者方法
@@ -31,15 +36,120 @@ public class SubscriberMethod {
     final int priority;
     // 是否是黏性事件
     final boolean sticky;
+    // 订阅者方法调用器 @Nullable 为 null 时使用反射调用
+    final SubscriberInvoker invoker;
+    // 该方法在调用器中的序号
+    final int invokerIndex;
+    // 事件过滤器 @Nullable 为 null 时不过滤，创建时已检查过滤器接受该事件类型
+    final EventFilter<Object> filter;
+    // 黏性事件的回放深度，非黏性订阅者方法为 0
+    final int replay;
     /** Used for efficient comparison */
     String methodString;
 
     public SubscriberMethod(Method method, Class<?> eventType, ThreadMode threadMode, int priority, boolean sticky) {
+        this(method, eventType, threadMode, priority, sticky, null, -1);
+    }
+
+    public SubscriberMethod(Method method, Class<?> eventType, ThreadMode threadMode, int priority, boolean sticky,
+                            SubscriberInvoker invoker, int invokerIndex) {
+        this(method, eventType, threadMode, priority, sticky, invoker, invokerIndex, null);
+    }
+
+    /**
+     * @param filterClass Class 事件过滤器类，为 null 或 {@link EventFilter.None} 时不过滤；否则在此创建过滤器实例
+     */
+    public SubscriberMethod(Method method, Class<?> eventType, ThreadMode threadMode, int priority, boolean sticky,
+                            SubscriberInvoker invoker, int invokerIndex, Class<? extends EventFilter<?>> filterClass) {
+        this(method, eventType, threadMode, priority, sticky, invoker, invokerIndex, filterClass, 0);
+    }
+
+    /**
+     * @param replay int 黏性事件的回放深度，不能为负数；非黏性订阅者方法忽略该值
+     */
+    public SubscriberMethod(Method method, Class<?> eventType, ThreadMode threadMode, int priority, boolean sticky,
+                            SubscriberInvoker invoker, int invokerIndex, Class<? extends EventFilter<?>> filterClass,
+                            int replay) {
+        if (replay < 0) {
+            throw new EventBusException("Replay depth of " + method.getDeclaringClass().getName() + "."
+                    + method.getName() + " must not be negative: " + replay);
+        }
         this.method = method;
         this.threadMode = threadMode;
         this.eventType = eventType;
         this.priority = priority;
         this.sticky = sticky;
+        this.invoker = invoker;
+        this.invokerIndex = invokerIndex;
+        this.filter = createFilter(method, eventType, filterClass);
+        this.replay = sticky ? replay : 0;
+    }
+
+    /**
+     * 检查过滤器接受的事件类型后创建过滤器实例
+     * 过滤器接受的事件类型必须能接收该订阅者方法的所有事件，否则发布时会在过滤器中抛出 ClassCastException
+     */
+    @SuppressWarnings("unchecked")
+    private static EventFilter<Object> createFilter(Method method, Class<?> eventType,
+                                                    Class<? extends EventFilter<?>> filterClass) {
+        if (filterClass == null || filterClass == EventFilter.None.class) {
+            return null;
+        }
+        Class<?> filterEventType = getFilterEventType(filterClass);
+        if (filterEventType != null && !filterEventType.isAssignableFrom(eventType)) {
+            throw new EventBusException("Event filter " + filterClass.getName() + " accepts "
+                    + filterEventType.getName() + ", which is not a supertype of event type " + eventType.getName()
+                    + " of " + method.getDeclaringClass().getName() + "." + method.getName());
+        }
+        try {
+            // 已检查类型参数，过滤器可以接收该订阅者方法的所有事件
+            return (EventFilter<Object>) filterClass.getDeclaredConstructor().newInstance();
+        } catch (InstantiationException | IllegalAccessException | NoSuchMethodException
+                | InvocationTargetException e) {
+            throw new EventBusException("Could not create event filter " + filterClass.getName() + " for "
+                    + method.getDeclaringClass().getName() + "." + method.getName()
+                    + ", it must be public with a public no-arg constructor", e);
+        }
+    }
+
+    /**
+     * 获取过滤器类为 {@link EventFilter} 的类型参数指定的事件类型
+     * 沿过滤器类的超类和接口查找，类型参数由超类的类型变量间接指定等无法直接确定时返回 null，此时不检查
+     *
+     * @return Class<?> 过滤器接受的事件类型 @Nullable
+     */
+    static Class<?> getFilterEventType(Class<?> filterClass) {
+        for (Class<?> clazz = filterClass; clazz != null; clazz = clazz.getSuperclass()) {
+            for (Type type : clazz.getGenericInterfaces()) {
+                Class<?> eventType = getFilterEventType(type);
+                if (eventType != null) {
+                    return eventType;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Class<?> getFilterEventType(Type type) {
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) type;
+            Type rawType = parameterizedType.getRawType();
+            if (rawType == EventFilter.class) {
+                Type argument = parameterizedType.getActualTypeArguments()[0];
+                if (argument instanceof Class) {
+                    return (Class<?>) argument;
+                } else if (argument instanceof ParameterizedType) {
+                    return (Class<?>) ((ParameterizedType) argument).getRawType();
+                }
+                return null;
+            }
+            type = rawType;
+        }
+        if (type instanceof Class && EventFilter.class.isAssignableFrom((Class<?>) type)) {
+            // 继承 EventFilter 的接口
+            return getFilterEventType((Class<?>) type);
+        }
+        return null;
     }
 
     @Override
@@ -17,14 +17,21 @@ package org.greenrobot.eventbus;
 
 import org.greenrobot.eventbus.meta.SubscriberInfo;
 import org.greenrobot.eventbus.meta.SubscriberInfoIndex;
+import org.greenrobot.eventbus.meta.SubscriberInvoker;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 订阅者方法查找器
@@ -40,17 +47,39 @@ class SubscriberMethodFinder {
 
     private static final int MODIFIERS_IGNORE = Modifier.ABSTRACT | Modifier.STATIC | BRIDGE | SYNTHETIC;
     /**
-     * 订阅者方法缓存 ConcurrentHashMap，为了避免重复查找订阅者的订阅方法，维护了此缓存
+     * 订阅者方法缓存，为了避免重复查找订阅者的订阅方法，维护了此缓存
+     * 读写不加锁，且不会阻止订阅者类的类加载器被卸载，见 {@link ClassCache}
      * key:   Class<?>                 订阅者 Class 对象
      * value: List<SubscriberMethod>>  订阅者方法 List
      */
-    private static final Map<Class<?>, List<SubscriberMethod>> METHOD_CACHE = new ConcurrentHashMap<>();
-    // 订阅者索引类集合
-    private List<SubscriberInfoIndex> subscriberInfoIndexes;
+    private static final ClassCache<List<SubscriberMethod>> METHOD_CACHE = ClassCache.create();
+    /**
+     * 订阅者方法调用器缓存，反射查找到的方法只生成一次调用器，子类共享父类方法的调用器
+     * 以方法的声明类为 key，与 {@link #METHOD_CACHE} 一样不会阻止订阅者类的类加载器被卸载
+     * 无法生成调用器的方法缓存为 {@link #NO_INVOKER}，只尝试、记录一次
+     * key:   Class<?>             订阅者方法的声明类
+     * value: Map<Method, Object>  订阅者方法 -> 由 {@link SubscriberInvokerFactory} 生成的调用器或 {@link #NO_INVOKER}
+     */
+    private static final ClassCache<Map<Method, Object>> INVOKER_CACHE = ClassCache.create();
+    private static final Object NO_INVOKER = new Object();
+    // 订阅者索引类集合，创建时复制，之后不再变化 @Nullable
+    private final List<SubscriberInfoIndex> subscriberInfoIndexes;
+    /**
+     * 合并所有索引类的查找结果，没有订阅者信息的类缓存为 {@link #NO_SUBSCRIBER_INFO}，
+     * 无论安装了多少个索引类，每个类只在第一次查找时遍历所有索引类
+     * key:   Class<?> 订阅者或其超类的 Class 对象
+     * value: Object   SubscriberInfo 或 {@link #NO_SUBSCRIBER_INFO}
+     */
+    private final ClassCache<Object> subscriberInfoCache = ClassCache.create();
+    private static final Object NO_SUBSCRIBER_INFO = new Object();
     // 是否进行严格的方法验证 默认值为 false
     private final boolean strictMethodVerification;
     // 是否忽略生成的索引 默认值为 false
     private final boolean ignoreGeneratedIndex;
+    // 反射查找结果的磁盘缓存 @Nullable
+    private final SubscriberMetadataCache metadataCache;
+    // 日志处理程序
+    private final Logger logger;
 
     // FIND_STATE_POOL 长度
     private static final int POOL_SIZE = 4;
@@ -59,9 +88,17 @@ class SubscriberMethodFinder {
 
     SubscriberMethodFinder(List<SubscriberInfoIndex> subscriberInfoIndexes, boolean strictMethodVerification,
                            boolean ignoreGeneratedIndex) {
-        this.subscriberInfoIndexes = subscriberInfoIndexes;
+        this(subscriberInfoIndexes, strictMethodVerification, ignoreGeneratedIndex, null, Logger.Default.get());
+    }
+
+    SubscriberMethodFinder(List<SubscriberInfoIndex> subscriberInfoIndexes, boolean strictMethodVerification,
+                           boolean ignoreGeneratedIndex, SubscriberMetadataCache metadataCache, Logger logger) {
+        this.subscriberInfoIndexes = subscriberInfoIndexes != null && !subscriberInfoIndexes.isEmpty()
+                ? new ArrayList<>(subscriberInfoIndexes) : null;
         this.strictMethodVerification = strictMethodVerification;
         this.ignoreGeneratedIndex = ignoreGeneratedIndex;
+        this.metadataCache = metadataCache;
+        this.logger = logger;
     }
 
     /**
@@ -79,6 +116,17 @@ class SubscriberMethodFinder {
             return subscriberMethods;
         }
 
+        // 完全通过反射查找的订阅者类，先尝试从磁盘缓存中获取
+        long fingerprint = metadataCache != null
+                ? getFingerprint(subscriberClass) : SubscriberMetadataCache.NO_FINGERPRINT;
+        if (fingerprint != SubscriberMetadataCache.NO_FINGERPRINT) {
+            subscriberMethods = findUsingMetadataCache(subscriberClass, fingerprint);
+            if (subscriberMethods != null) {
+                METHOD_CACHE.put(subscriberClass, subscriberMethods);
+                return subscriberMethods;
+            }
+        }
+
         // 是否忽略生成的索引
         if (ignoreGeneratedIndex) {
             // 忽略索引的情况下，通过反射进行查找订阅者方法
@@ -94,11 +142,70 @@ class SubscriberMethodFinder {
         } else {
             // 将此订阅者和其订阅者方法添加进缓存中
             METHOD_CACHE.put(subscriberClass, subscriberMethods);
+            if (fingerprint != SubscriberMetadataCache.NO_FINGERPRINT) {
+                metadataCache.put(subscriberClass, fingerprint, subscriberMethods);
+            }
             // 返回查找的订阅者方法
             return subscriberMethods;
         }
     }
 
+    /**
+     * 并行查找多个订阅者类的订阅者方法
+     * 调用线程与提交到 executor 的辅助任务从同一个计数器中领取订阅者类，调用线程自己也参与查找，
+     * 因此即使 executor 繁忙、辅助任务没有机会执行，也不会死锁，只是退化为串行查找
+     *
+     * @param subscriberClasses List<Class<?>> 不重复的订阅者 Class 对象
+     * @param executor          Executor 执行辅助任务的线程池
+     * @return List<List<SubscriberMethod>> 与 subscriberClasses 下标一致的订阅者方法
+     */
+    List<List<SubscriberMethod>> findSubscriberMethods(final List<Class<?>> subscriberClasses, Executor executor) {
+        final int count = subscriberClasses.size();
+        // 预先填满，各线程只对各自领取的下标 set，不做结构性修改；done.await() 保证结果对调用线程可见
+        final List<List<SubscriberMethod>> results =
+                new ArrayList<>(Collections.<List<SubscriberMethod>>nCopies(count, null));
+        final AtomicInteger nextIndex = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(count);
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                int index;
+                while ((index = nextIndex.getAndIncrement()) < count) {
+                    try {
+                        results.set(index, findSubscriberMethods(subscriberClasses.get(index)));
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }
+        };
+        int helpers = Math.min(count, Runtime.getRuntime().availableProcessors()) - 1;
+        for (int i = 0; i < helpers; i++) {
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                // 线程池不接受任务时由调用线程完成剩余的查找
+                break;
+            }
+        }
+        worker.run();
+        // 调用线程领取不到新的订阅者类后，只需等待辅助任务完成已领取的部分
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EventBusException("Interrupted while finding subscriber methods", e);
+        }
+        RuntimeException e = failure.get();
+        if (e != null) {
+            throw e;
+        }
+        return results;
+    }
+
     /**
      * 查找订阅者方法
      *
@@ -193,34 +300,46 @@ class SubscriberMethodFinder {
      * @return SubscriberInfo 索引类
      */
     private SubscriberInfo getSubscriberInfo(FindState findState) {
-        // TODO: 2022/5/4 findState.subscriberInfo.getSuperSubscriberInfo() 执行两次，可以缩短为一次
         // findState.subscriberInfo 初始状态是为 null 的，唯一赋值途径也是本方法的返回值
         // 当 findState.subscriberInfo 不为 null 时，就表示已经进行了一轮查找了，一轮查找后，理论上已经转向查找其父类了
         // 所以此 if 的操作，其实就是转向父类型
-        // 如果在 FindState 中存在索引类，并且索引类的父类不为null，进行下一步操作
-        if (findState.subscriberInfo != null && findState.subscriberInfo.getSuperSubscriberInfo() != null) {
-            // 获取当前索引类的父类
+        if (findState.subscriberInfo != null) {
+            // 获取当前索引类的父类订阅者信息，只获取一次
             SubscriberInfo superclassInfo = findState.subscriberInfo.getSuperSubscriberInfo();
             // 如果 findState 对应的 clazz 是当前获取到的父类，就返回此父类的 SubscriberInfo
-            if (findState.clazz == superclassInfo.getSubscriberClass()) {
+            if (superclassInfo != null && findState.clazz == superclassInfo.getSubscriberClass()) {
                 return superclassInfo;
             }
         }
 
-        // 判断订阅者索引类集合是否为 null，不为 null 时进行遍历获取
-        if (subscriberInfoIndexes != null) {
+        // 从所有索引类中获取当前 findState.clazz 的订阅者信息类，找不到时返回 null
+        return getIndexedSubscriberInfo(findState.clazz);
+    }
+
+    /**
+     * 从所有索引类中获取给定类的订阅者信息，结果（包括找不到的情况）按类缓存
+     *
+     * @param clazz Class<?> 订阅者或其超类的 Class 对象
+     * @return SubscriberInfo 第一个包含该类的索引类中的订阅者信息，没有时返回 null
+     */
+    private SubscriberInfo getIndexedSubscriberInfo(Class<?> clazz) {
+        if (subscriberInfoIndexes == null) {
+            return null;
+        }
+        Object cached = subscriberInfoCache.get(clazz);
+        if (cached == null) {
+            cached = NO_SUBSCRIBER_INFO;
             for (SubscriberInfoIndex index : subscriberInfoIndexes) {
-                // 获取当前 findState.clazz 的订阅者信息类
-                SubscriberInfo info = index.getSubscriberInfo(findState.clazz);
+                SubscriberInfo info = index.getSubscriberInfo(clazz);
                 if (info != null) {
-                    // 不为 null 时表示已找到该 findState.clazz 对应的索引类的订阅者信息类
-                    return info;
+                    cached = info;
+                    break;
                 }
             }
+            // 多个线程同时查找时结果相同，后写入的覆盖先写入的即可
+            subscriberInfoCache.put(clazz, cached);
         }
-
-        // 找不到索引类，返回null
-        return null;
+        return cached != NO_SUBSCRIBER_INFO ? (SubscriberInfo) cached : null;
     }
 
     /**
@@ -301,9 +420,11 @@ class SubscriberMethodFinder {
                         if (findState.checkAdd(method, eventType)) {
                             // 获取订阅者方法的线程模型
                             ThreadMode threadMode = subscribeAnnotation.threadMode();
-                            // 将此订阅者方法 添加进 subscriberMethods
+                            // 将此订阅者方法 添加进 subscriberMethods，同时生成直接调用的调用器
                             findState.subscriberMethods.add(new SubscriberMethod(method, eventType, threadMode,
-                                    subscribeAnnotation.priority(), subscribeAnnotation.sticky()));
+                                    subscribeAnnotation.priority(), subscribeAnnotation.sticky(),
+                                    getInvoker(method, eventType), 0, subscribeAnnotation.filter(),
+                                    subscribeAnnotation.replay()));
                         }
                     }
                 } else
@@ -326,11 +447,129 @@ class SubscriberMethodFinder {
         }
     }
 
+    /**
+     * 获取需要查找订阅者方法的类（订阅者类及其非系统超类），顺序与 {@link FindState#moveToSuperclass()} 一致
+     */
+    private static List<Class<?>> getSubscriberClassHierarchy(Class<?> subscriberClass) {
+        List<Class<?>> classes = new ArrayList<>();
+        Class<?> clazz = subscriberClass;
+        while (clazz != null && !isSystemClass(clazz.getName())) {
+            classes.add(clazz);
+            clazz = clazz.getSuperclass();
+        }
+        return classes;
+    }
+
+    private static boolean isSystemClass(String clazzName) {
+        return clazzName.startsWith("java.") || clazzName.startsWith("javax.") ||
+                clazzName.startsWith("android.") || clazzName.startsWith("androidx.");
+    }
+
+    /**
+     * 计算订阅者类用于磁盘缓存的指纹；订阅者类或其超类有索引时不使用磁盘缓存
+     *
+     * @return long 指纹，不使用磁盘缓存时返回 {@link SubscriberMetadataCache#NO_FINGERPRINT}
+     */
+    private long getFingerprint(Class<?> subscriberClass) {
+        List<Class<?>> classes = getSubscriberClassHierarchy(subscriberClass);
+        if (!ignoreGeneratedIndex) {
+            for (Class<?> clazz : classes) {
+                if (getIndexedSubscriberInfo(clazz) != null) {
+                    return SubscriberMetadataCache.NO_FINGERPRINT;
+                }
+            }
+        }
+        return SubscriberMetadataCache.fingerprint(classes);
+    }
+
+    /**
+     * 按磁盘缓存的元数据直接取得订阅者方法，不再扫描所有方法和解析注解
+     *
+     * @return List<SubscriberMethod> 订阅者方法，没有缓存或无法解析时返回 null，此时重新查找
+     */
+    private List<SubscriberMethod> findUsingMetadataCache(Class<?> subscriberClass, long fingerprint) {
+        List<SubscriberMetadataCache.MethodEntry> entries = metadataCache.get(subscriberClass, fingerprint);
+        if (entries == null) {
+            return null;
+        }
+        List<Class<?>> classes = getSubscriberClassHierarchy(subscriberClass);
+        List<SubscriberMethod> subscriberMethods = new ArrayList<>(entries.size());
+        try {
+            for (SubscriberMetadataCache.MethodEntry entry : entries) {
+                Class<?> declaringClass = null;
+                for (Class<?> clazz : classes) {
+                    if (clazz.getName().equals(entry.declaringClassName)) {
+                        declaringClass = clazz;
+                        break;
+                    }
+                }
+                if (declaringClass == null) {
+                    return null;
+                }
+                ClassLoader classLoader = declaringClass.getClassLoader();
+                Class<?> eventType = Class.forName(entry.eventTypeName, false, classLoader);
+                Method method = declaringClass.getDeclaredMethod(entry.methodName, eventType);
+                Class<? extends EventFilter<?>> filterClass = entry.filterClassName != null
+                        ? loadFilterClass(entry.filterClassName, classLoader) : null;
+                subscriberMethods.add(new SubscriberMethod(method, eventType, entry.threadMode, entry.priority,
+                        entry.sticky, getInvoker(method, eventType), 0, filterClass, entry.replay));
+            }
+        } catch (ClassNotFoundException | NoSuchMethodException | LinkageError | ClassCastException e) {
+            return null;
+        }
+        return subscriberMethods;
+    }
+
+    /**
+     * 加载磁盘缓存中记录的事件过滤器类
+     *
+     * @throws ClassCastException 该类已不再实现 EventFilter
+     */
+    @SuppressWarnings("unchecked")
+    private static Class<? extends EventFilter<?>> loadFilterClass(String className, ClassLoader classLoader)
+            throws ClassNotFoundException {
+        return (Class<? extends EventFilter<?>>) Class.forName(className, false, classLoader)
+                .asSubclass(EventFilter.class);
+    }
+
+    /**
+     * 获取订阅者方法的调用器，首次获取时通过 {@link SubscriberInvokerFactory} 生成并缓存，生成失败的结果同样缓存
+     * 已缓存时不加锁；生成在声明类的调用器 Map 上加锁，并发注册同一个类时每个方法只生成（并记录失败日志）一次
+     *
+     * @return SubscriberInvoker 调用器，不支持时返回 null，此时使用反射调用
+     */
+    private SubscriberInvoker getInvoker(Method method, Class<?> eventType) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        Map<Method, Object> invokers = INVOKER_CACHE.get(declaringClass);
+        if (invokers == null) {
+            Map<Method, Object> created = new ConcurrentHashMap<>();
+            invokers = INVOKER_CACHE.putIfAbsent(declaringClass, created);
+            if (invokers == null) {
+                invokers = created;
+            }
+        }
+        Object invoker = invokers.get(method);
+        if (invoker == null) {
+            synchronized (invokers) {
+                invoker = invokers.get(method);
+                if (invoker == null) {
+                    invoker = SubscriberInvokerFactory.create(method, eventType, logger);
+                    if (invoker == null) {
+                        invoker = NO_INVOKER;
+                    }
+                    invokers.put(method, invoker);
+                }
+            }
+        }
+        return invoker != NO_INVOKER ? (SubscriberInvoker) invoker : null;
+    }
+
     /**
      * 用于测试
      */
     static void clearCaches() {
         METHOD_CACHE.clear();
+        INVOKER_CACHE.clear();
     }
 
     /**
@@ -464,8 +703,7 @@ class SubscriberMethodFinder {
                 String clazzName = clazz.getName();
                 // Skip system classes, this degrades performance.
                 // Also we might avoid some ClassNotFoundException (see FAQ for background).
-                if (clazzName.startsWith("java.") || clazzName.startsWith("javax.") ||
-                        clazzName.startsWith("android.") || clazzName.startsWith("androidx.")) {
+                if (isSystemClass(clazzName)) {
                     clazz = null;
                 }
             }
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * 弱引用订阅者，见 {@link EventBusBuilder#weakSubscribers(boolean)} 和 {@link EventBus#registerWeak(Object)}
+ * 按对象标识比较：引用的对象相同（==）时相等，对象被回收后只与自身相等；hashCode 在创建时由 {@link System#identityHashCode(Object)} 确定，
+ * 因此对象被回收后仍可以从 Map 中移除
+ */
+final class SubscriberReference extends WeakReference<Object> {
+    private final int hash;
+
+    SubscriberReference(Object subscriber, ReferenceQueue<Object> queue) {
+        super(subscriber, queue);
+        hash = System.identityHashCode(subscriber);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == this) {
+            return true;
+        } else if (other instanceof SubscriberReference) {
+            Object subscriber = get();
+            return subscriber != null && subscriber == ((SubscriberReference) other).get();
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -20,31 +20,79 @@ package org.greenrobot.eventbus;
  */
 public final class Subscription {
     /**
-     * 订阅者
+     * 订阅者，弱引用订阅时为 null
      */
     final Object subscriber;
+    /**
+     * 弱引用订阅时订阅者的弱引用，否则为 null
+     */
+    final SubscriberReference subscriberReference;
     /**
      * 订阅方法
      */
     final SubscriberMethod subscriberMethod;
+    /**
+     * 订阅键，通过 {@link EventBus#register(Object, Object)} 注册时不为 null
+     * 带键的订阅只接收通过 {@link EventBus#post(Object, Object)} 以相同的键（equals）发布的事件
+     */
+    final Object key;
     /**
      * 是否活跃
      * 调用 {@link EventBus#unregister(Object)} 后立即变为 false，
      * 队列事件传递 {@link EventBus#invokeSubscriber(PendingPost)} 检查以防止出现竞争条件。
      */
     volatile boolean active;
+    /**
+     * 注册序号，由 EventBus 在同步块中创建订阅关系时分配，同一事件类型中相同优先级的订阅关系按此排列
+     */
+    long sequence;
+    /**
+     * 回放状态，{@link SubscriberMethod#replay} 大于 0 时在订阅关系加入注册表之前创建，否则为 null
+     */
+    StickyReplay replay;
 
     public Subscription(Object subscriber, SubscriberMethod subscriberMethod) {
+        this(subscriber, subscriberMethod, null);
+    }
+
+    public Subscription(Object subscriber, SubscriberMethod subscriberMethod, Object key) {
         this.subscriber = subscriber;
+        this.subscriberReference = null;
+        this.subscriberMethod = subscriberMethod;
+        this.key = key;
+        active = true;
+    }
+
+    /**
+     * 弱引用订阅
+     */
+    Subscription(SubscriberReference subscriberReference, SubscriberMethod subscriberMethod, Object key) {
+        this.subscriber = null;
+        this.subscriberReference = subscriberReference;
         this.subscriberMethod = subscriberMethod;
+        this.key = key;
         active = true;
     }
 
+    /**
+     * 获取订阅者
+     *
+     * @return Object 订阅者，弱引用的订阅者已被回收时返回 null
+     */
+    Object getSubscriber() {
+        return subscriberReference == null ? subscriber : subscriberReference.get();
+    }
+
+    /**
+     * 弱引用订阅按弱引用的对象标识比较（同一个订阅者的所有订阅关系共用一个弱引用），
+     * 不比较 {@link #getSubscriber()}，否则两个已被回收的订阅者（都为 null）会被认为相等
+     */
     @Override
     public boolean equals(Object other) {
         if (other instanceof Subscription) {
             Subscription otherSubscription = (Subscription) other;
             return subscriber == otherSubscription.subscriber
+                    && subscriberReference == otherSubscription.subscriberReference
                     && subscriberMethod.equals(otherSubscription.subscriberMethod);
         } else {
             return false;
@@ -53,6 +101,7 @@ public final class Subscription {
 
     @Override
     public int hashCode() {
-        return subscriber.hashCode() + subscriberMethod.methodString.hashCode();
+        int subscriberHash = subscriberReference == null ? subscriber.hashCode() : subscriberReference.hashCode();
+        return subscriberHash + subscriberMethod.methodString.hashCode();
     }
 }
\ No newline at end of file
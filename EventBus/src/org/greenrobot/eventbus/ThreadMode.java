@@ -32,7 +32,8 @@ public enum ThreadMode {
     /**
      * 在 Android 上, 订阅者将在 Android 的主线程（UI 线程）中调用. 如果发布线程是主线程, 订阅者方法将被直接调用, 阻塞发布线程. 否则，事件将排队等待传递（非阻塞）。
      * 使用这种模式的订阅者必须快速返回以避免阻塞主线程。
-     * 如果不在 Android 上，其行为与 {@link #POSTING} 相同。
+     * 如果不在 Android 上，其行为与 {@link #POSTING} 相同，
+     * 除非通过 {@link EventBusBuilder#mainThread(Thread, java.util.concurrent.Executor)} 指定了事件循环线程作为主线程。
      */
     MAIN,
 
@@ -50,8 +51,10 @@ public enum ThreadMode {
     /**
      * 在 Android 上，订阅者将在后台线程中调用。如果发布线程不是主线程，订阅者方法将直接在发布线程中调用。
      * 如果发布线程是主线程，EventBus 使用单个后台线程，它将按顺序传递其所有事件。
+     * 通过 {@link EventBusBuilder#backgroundLanes(int)} 配置多条后台通道时，每个订阅者的事件仍按顺序传递，不同通道之间并行。
      * 使用此模式的订阅者应尽量快速返回以避免阻塞后台线程。
-     * 如果不在 Android 上，则始终使用后台线程。
+     * 如果不在 Android 上，则始终使用后台线程；通过 {@link EventBusBuilder#noMainThread()} 配置没有主线程时，
+     * 所有线程都不是主线程，订阅者方法总是直接在发布线程中调用。
      */
     BACKGROUND,
 
@@ -16,6 +16,7 @@
 package org.greenrobot.eventbus.meta;
 
 import org.greenrobot.eventbus.EventBusException;
+import org.greenrobot.eventbus.EventFilter;
 import org.greenrobot.eventbus.SubscriberMethod;
 import org.greenrobot.eventbus.ThreadMode;
 
@@ -28,6 +29,8 @@ public abstract class AbstractSubscriberInfo implements SubscriberInfo {
     private final Class subscriberClass;
     private final Class<? extends SubscriberInfo> superSubscriberInfoClass;
     private final boolean shouldCheckSuperclass;
+    // 父类订阅者信息，直接传入或由 superSubscriberInfoClass 第一次创建后缓存 @Nullable
+    private volatile SubscriberInfo superSubscriberInfo;
 
     protected AbstractSubscriberInfo(Class subscriberClass, Class<? extends SubscriberInfo> superSubscriberInfoClass,
                                      boolean shouldCheckSuperclass) {
@@ -36,6 +39,19 @@ public abstract class AbstractSubscriberInfo implements SubscriberInfo {
         this.shouldCheckSuperclass = shouldCheckSuperclass;
     }
 
+    /**
+     * 直接关联父类订阅者信息，不再通过反射创建
+     *
+     * @param superSubscriberInfo SubscriberInfo 父类订阅者信息 @Nullable
+     */
+    protected AbstractSubscriberInfo(Class subscriberClass, boolean shouldCheckSuperclass,
+                                     SubscriberInfo superSubscriberInfo) {
+        this.subscriberClass = subscriberClass;
+        this.superSubscriberInfoClass = null;
+        this.shouldCheckSuperclass = shouldCheckSuperclass;
+        this.superSubscriberInfo = superSubscriberInfo;
+    }
+
     /**
      * 获取索引类的 Class 对象
      */
@@ -46,19 +62,23 @@ public abstract class AbstractSubscriberInfo implements SubscriberInfo {
 
     /**
      * 获取当前索引类的父类订阅者信息
+     * 通过 Class 对象关联时只在第一次调用时创建实例，并发时可能创建多次，结果相同
      */
     @Override
     public SubscriberInfo getSuperSubscriberInfo() {
-        if (superSubscriberInfoClass == null) {
-            return null;
+        SubscriberInfo info = superSubscriberInfo;
+        if (info != null || superSubscriberInfoClass == null) {
+            return info;
         }
         try {
-            return superSubscriberInfoClass.newInstance();
+            info = superSubscriberInfoClass.newInstance();
         } catch (InstantiationException e) {
             throw new RuntimeException(e);
         } catch (IllegalAccessException e) {
             throw new RuntimeException(e);
         }
+        superSubscriberInfo = info;
+        return info;
     }
 
     /**
@@ -79,9 +99,47 @@ public abstract class AbstractSubscriberInfo implements SubscriberInfo {
 
     protected SubscriberMethod createSubscriberMethod(String methodName, Class<?> eventType, ThreadMode threadMode,
                                                       int priority, boolean sticky) {
+        return createSubscriberMethod(methodName, eventType, threadMode, priority, sticky, null, -1);
+    }
+
+    /**
+     * 创建订阅者方法，并关联生成的调用器
+     *
+     * @param invoker      SubscriberInvoker 生成的调用器，为 null 时使用反射调用
+     * @param invokerIndex int 该方法在调用器中的序号
+     */
+    protected SubscriberMethod createSubscriberMethod(String methodName, Class<?> eventType, ThreadMode threadMode,
+                                                      int priority, boolean sticky, SubscriberInvoker invoker,
+                                                      int invokerIndex) {
+        return createSubscriberMethod(methodName, eventType, threadMode, priority, sticky, invoker, invokerIndex,
+                null);
+    }
+
+    /**
+     * 创建订阅者方法，并关联生成的调用器和事件过滤器
+     *
+     * @param filterClass Class 事件过滤器类，为 null 时不过滤
+     */
+    protected SubscriberMethod createSubscriberMethod(String methodName, Class<?> eventType, ThreadMode threadMode,
+                                                      int priority, boolean sticky, SubscriberInvoker invoker,
+                                                      int invokerIndex, Class<? extends EventFilter<?>> filterClass) {
+        return createSubscriberMethod(methodName, eventType, threadMode, priority, sticky, invoker, invokerIndex,
+                filterClass, 0);
+    }
+
+    /**
+     * 创建订阅者方法，并关联生成的调用器、事件过滤器和黏性事件的回放深度
+     *
+     * @param replay int 黏性事件的回放深度
+     */
+    protected SubscriberMethod createSubscriberMethod(String methodName, Class<?> eventType, ThreadMode threadMode,
+                                                      int priority, boolean sticky, SubscriberInvoker invoker,
+                                                      int invokerIndex, Class<? extends EventFilter<?>> filterClass,
+                                                      int replay) {
         try {
             Method method = subscriberClass.getDeclaredMethod(methodName, eventType);
-            return new SubscriberMethod(method, eventType, threadMode, priority, sticky);
+            return new SubscriberMethod(method, eventType, threadMode, priority, sticky, invoker, invokerIndex,
+                    filterClass, replay);
         } catch (NoSuchMethodException e) {
             throw new EventBusException("Could not find subscriber method in " + subscriberClass +
                     ". Maybe a missing ProGuard rule?", e);
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus.meta;
+
+/**
+ * 事件类型索引，注解处理器生成的索引类可以同时实现此接口
+ * 为索引中的事件类型及其所有超类、接口分配连续的整数 id，并给出每个类型的超类型闭包；
+ * EventBus 创建时据此预先填充事件类型缓存，发布这些事件时不再通过 getInterfaces()、getSuperclass() 遍历类层次
+ */
+public interface EventTypeIndex {
+    /**
+     * 获取所有事件类型
+     *
+     * @return Class<?>[] 事件类型，下标即事件类型的 id
+     */
+    Class<?>[] getEventTypes();
+
+    /**
+     * 获取所有事件类型的超类型闭包
+     *
+     * @return int[][] 下标为事件类型的 id，元素为该类型自身及其所有超类、接口的 id，顺序与 EventBus 运行时查找的顺序一致
+     */
+    int[][] getEventTypeHierarchies();
+}
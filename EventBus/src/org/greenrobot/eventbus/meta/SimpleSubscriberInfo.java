@@ -19,34 +19,71 @@ import org.greenrobot.eventbus.SubscriberMethod;
 
 /**
  * 简单订阅者信息类 用于注解处理器生成的索引类中
- * 使用 {@link SubscriberMethodInfo} 对象按需创建 {@link org.greenrobot.eventbus.SubscriberMethod} 对象。
+ * 使用 {@link SubscriberMethodInfo} 对象按需创建 {@link org.greenrobot.eventbus.SubscriberMethod} 对象，
+ * 第一次获取时创建并缓存，之后不再通过反射查找方法
  */
 public class SimpleSubscriberInfo extends AbstractSubscriberInfo {
     /**
      * 所有订阅者方法信息
      */
     private final SubscriberMethodInfo[] methodInfos;
+    /**
+     * 生成的订阅者方法调用器，序号与 methodInfos 的下标一致 @Nullable
+     */
+    private final SubscriberInvoker invoker;
+    /**
+     * 已创建的订阅者方法，第一次获取时创建
+     */
+    private volatile SubscriberMethod[] methods;
 
     public SimpleSubscriberInfo(Class subscriberClass, boolean shouldCheckSuperclass, SubscriberMethodInfo[] methodInfos) {
-        super(subscriberClass, null, shouldCheckSuperclass);
+        this(subscriberClass, shouldCheckSuperclass, methodInfos, null);
+    }
+
+    public SimpleSubscriberInfo(Class subscriberClass, boolean shouldCheckSuperclass, SubscriberMethodInfo[] methodInfos,
+                                SubscriberInvoker invoker) {
+        this(subscriberClass, shouldCheckSuperclass, methodInfos, invoker, null);
+    }
+
+    /**
+     * @param superSubscriberInfo SubscriberInfo 父类的订阅者信息，由生成的索引类直接关联 @Nullable
+     */
+    public SimpleSubscriberInfo(Class subscriberClass, boolean shouldCheckSuperclass, SubscriberMethodInfo[] methodInfos,
+                                SubscriberInvoker invoker, SubscriberInfo superSubscriberInfo) {
+        super(subscriberClass, shouldCheckSuperclass, superSubscriberInfo);
         this.methodInfos = methodInfos;
+        this.invoker = invoker;
     }
 
     /**
-     * 获取当前类的所有订阅者方法，该方法是同步方法
+     * 获取当前类的所有订阅者方法，第一次调用时在同步块中创建，之后不加锁直接返回
      *
-     * @return SubscriberMethod[] 订阅者方法
+     * @return SubscriberMethod[] 订阅者方法，多次调用返回同一个数组，调用方不能修改
      */
     @Override
-    public synchronized SubscriberMethod[] getSubscriberMethods() {
+    public SubscriberMethod[] getSubscriberMethods() {
+        SubscriberMethod[] result = methods;
+        if (result == null) {
+            synchronized (this) {
+                result = methods;
+                if (result == null) {
+                    result = createSubscriberMethods();
+                    methods = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private SubscriberMethod[] createSubscriberMethods() {
         // 遍历订阅者方法信息集合，创建 SubscriberMethod
         int length = methodInfos.length;
-        SubscriberMethod[] methods = new SubscriberMethod[length];
+        SubscriberMethod[] result = new SubscriberMethod[length];
         for (int i = 0; i < length; i++) {
             SubscriberMethodInfo info = methodInfos[i];
-            methods[i] = createSubscriberMethod(info.methodName, info.eventType, info.threadMode,
-                    info.priority, info.sticky);
+            result[i] = createSubscriberMethod(info.methodName, info.eventType, info.threadMode,
+                    info.priority, info.sticky, invoker, i, info.filterClass, info.replay);
         }
-        return methods;
+        return result;
     }
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus.meta;
+
+/**
+ * 订阅者方法调用器，由注解处理器为每个索引订阅者类生成
+ * 通过方法序号 switch 到具体的订阅方法，强转后直接调用，取代 {@link java.lang.reflect.Method#invoke(Object, Object...)} 的反射调用
+ */
+public interface SubscriberInvoker {
+    /**
+     * 调用订阅者方法
+     *
+     * @param methodIndex int 订阅者方法序号，与 {@link SubscriberInfo#getSubscriberMethods()} 中的下标一致
+     * @param subscriber  Object 订阅者
+     * @param event       Object 事件
+     * @throws Throwable 订阅者方法抛出的异常，原样抛出，不做包装
+     */
+    void invokeSubscriber(int methodIndex, Object subscriber, Object event) throws Throwable;
+}
@@ -15,6 +15,7 @@
  */
 package org.greenrobot.eventbus.meta;
 
+import org.greenrobot.eventbus.EventFilter;
 import org.greenrobot.eventbus.ThreadMode;
 
 /**
@@ -32,6 +33,10 @@ public class SubscriberMethodInfo {
     final int priority;
     // 是否是黏性事件
     final boolean sticky;
+    // 事件过滤器类 @Nullable
+    final Class<? extends EventFilter<?>> filterClass;
+    // 黏性事件的回放深度
+    final int replay;
 
     /**
      * 构造 2 参数
@@ -65,10 +70,43 @@ public class SubscriberMethodInfo {
      */
     public SubscriberMethodInfo(String methodName, Class<?> eventType, ThreadMode threadMode,
                                 int priority, boolean sticky) {
+        this(methodName, eventType, threadMode, priority, sticky, null);
+    }
+
+    /**
+     * 构造 6 参数
+     *
+     * @param methodName  方法名
+     * @param eventType   接收的事件类型 Class 对象
+     * @param threadMode  该订阅方法的线程模式
+     * @param priority    优先级
+     * @param sticky      是否是黏性事件
+     * @param filterClass 事件过滤器类，为 null 时不过滤
+     */
+    public SubscriberMethodInfo(String methodName, Class<?> eventType, ThreadMode threadMode,
+                                int priority, boolean sticky, Class<? extends EventFilter<?>> filterClass) {
+        this(methodName, eventType, threadMode, priority, sticky, filterClass, 0);
+    }
+
+    /**
+     * 构造 7 参数
+     *
+     * @param methodName  方法名
+     * @param eventType   接收的事件类型 Class 对象
+     * @param threadMode  该订阅方法的线程模式
+     * @param priority    优先级
+     * @param sticky      是否是黏性事件
+     * @param filterClass 事件过滤器类，为 null 时不过滤
+     * @param replay      黏性事件的回放深度
+     */
+    public SubscriberMethodInfo(String methodName, Class<?> eventType, ThreadMode threadMode,
+                                int priority, boolean sticky, Class<? extends EventFilter<?>> filterClass, int replay) {
         this.methodName = methodName;
         this.threadMode = threadMode;
         this.eventType = eventType;
         this.priority = priority;
         this.sticky = sticky;
+        this.filterClass = filterClass;
+        this.replay = replay;
     }
 }
\ No newline at end of file
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 发布时缓存的分发计划在注册、注销之后不再被复用
+ */
+public class DispatchPlanTest {
+    private final List<String> calls = new ArrayList<>();
+
+    @Test
+    public void registerInvalidatesCachedPlan() {
+        EventBus eventBus = EventBus.builder().build();
+        eventBus.register(new StringRecorder("first", calls));
+        eventBus.post("event");
+
+        eventBus.register(new StringRecorder("second", calls));
+        calls.clear();
+        eventBus.post("event");
+
+        assertEquals(Arrays.asList("first", "second"), calls);
+    }
+
+    @Test
+    public void unregisterInvalidatesCachedPlan() {
+        EventBus eventBus = EventBus.builder().build();
+        StringRecorder first = new StringRecorder("first", calls);
+        eventBus.register(first);
+        eventBus.register(new StringRecorder("second", calls));
+        eventBus.post("event");
+
+        eventBus.unregister(first);
+        calls.clear();
+        eventBus.post("event");
+
+        assertEquals(Arrays.asList("second"), calls);
+    }
+
+    @Test
+    public void registerForSupertypeInvalidatesCachedPlanOfSubtype() {
+        EventBus eventBus = EventBus.builder().build();
+        eventBus.register(new StringRecorder("string", calls));
+        eventBus.post("event");
+
+        // 新的订阅关系的事件类型是已缓存分发计划的超类和接口
+        eventBus.register(new ObjectRecorder("object", calls));
+        eventBus.register(new CharSequenceRecorder("char-sequence", calls));
+        calls.clear();
+        eventBus.post("event");
+
+        // 按事件类型的顺序：类本身、接口、超类
+        assertEquals(Arrays.asList("string", "char-sequence", "object"), calls);
+    }
+
+    @Test
+    public void unregisterForSupertypeInvalidatesCachedPlanOfSubtype() {
+        EventBus eventBus = EventBus.builder().build();
+        ObjectRecorder object = new ObjectRecorder("object", calls);
+        eventBus.register(object);
+        eventBus.register(new StringRecorder("string", calls));
+        eventBus.post("event");
+        eventBus.post(1);
+
+        eventBus.unregister(object);
+        calls.clear();
+        eventBus.post("event");
+        eventBus.post(1);
+
+        assertEquals(Arrays.asList("string"), calls);
+    }
+
+    @Test
+    public void registerAllInvalidatesCachedPlan() {
+        EventBus eventBus = EventBus.builder().build();
+        eventBus.register(new ObjectRecorder("object", calls));
+        eventBus.post("event");
+
+        eventBus.registerAll(Arrays.asList(new StringRecorder("first", calls), new StringRecorder("second", calls)));
+        calls.clear();
+        eventBus.post("event");
+
+        assertEquals(Arrays.asList("first", "second", "object"), calls);
+    }
+
+    @Test
+    public void registerInvalidatesCachedPlanWithoutEventInheritance() {
+        EventBus eventBus = EventBus.builder().eventInheritance(false).build();
+        StringRecorder first = new StringRecorder("first", calls);
+        eventBus.register(first);
+        eventBus.register(new ObjectRecorder("object", calls));
+        eventBus.post("event");
+        assertEquals(Arrays.asList("first"), calls);
+
+        eventBus.register(new StringRecorder("second", calls));
+        eventBus.unregister(first);
+        calls.clear();
+        eventBus.post("event");
+
+        assertEquals(Arrays.asList("second"), calls);
+    }
+
+    @Test
+    public void planBuiltBeforeRegisterIsNotReusedAfterRepeatedChanges() {
+        EventBus eventBus = EventBus.builder().build();
+        StringRecorder recorder = new StringRecorder("recorder", calls);
+        for (int i = 0; i < 3; i++) {
+            eventBus.register(recorder);
+            eventBus.post("event");
+            eventBus.unregister(recorder);
+            eventBus.post("event");
+        }
+
+        assertEquals(Arrays.asList("recorder", "recorder", "recorder"), calls);
+    }
+
+    public static class StringRecorder {
+        final String name;
+        final List<String> calls;
+
+        StringRecorder(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        @Subscribe
+        public void onEvent(String event) {
+            calls.add(name);
+        }
+    }
+
+    public static class ObjectRecorder {
+        final String name;
+        final List<String> calls;
+
+        ObjectRecorder(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        @Subscribe
+        public void onEvent(Object event) {
+            calls.add(name);
+        }
+    }
+
+    public static class CharSequenceRecorder {
+        final String name;
+        final List<String> calls;
+
+        CharSequenceRecorder(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        @Subscribe
+        public void onEvent(CharSequence event) {
+            calls.add(name);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 事件过滤器 {@link Subscribe#filter()}
+ */
+public class EventFilterTest {
+
+    @Test
+    public void rejectedEventsAreNotDelivered() {
+        EventBus eventBus = EventBus.builder().build();
+        EvenSubscriber subscriber = new EvenSubscriber();
+        eventBus.register(subscriber);
+
+        for (int i = 0; i < 5; i++) {
+            eventBus.post(i);
+        }
+
+        assertEquals(3, subscriber.events.size());
+        assertEquals(4, (int) subscriber.events.get(2));
+    }
+
+    @Test
+    public void filterErrorIsHandledLikeSubscriberException() {
+        EventBus eventBus = EventBus.builder().logSubscriberExceptions(false).build();
+        FailingFilterSubscriber subscriber = new FailingFilterSubscriber();
+        ExceptionSubscriber exceptionSubscriber = new ExceptionSubscriber();
+        eventBus.register(subscriber);
+        eventBus.register(exceptionSubscriber);
+
+        eventBus.post("event");
+
+        assertTrue(subscriber.events.isEmpty());
+        assertEquals(1, exceptionSubscriber.events.size());
+        SubscriberExceptionEvent exceptionEvent = exceptionSubscriber.events.get(0);
+        assertTrue(exceptionEvent.throwable instanceof AssertionError);
+        assertSame(subscriber, exceptionEvent.causingSubscriber);
+    }
+
+    @Test
+    public void filterForAnotherEventTypeIsRejectedOnRegister() {
+        EventBus eventBus = EventBus.builder().build();
+        try {
+            eventBus.register(new MismatchedFilterSubscriber());
+            fail("Expected EventBusException");
+        } catch (EventBusException expected) {
+            // 期望的异常
+        }
+    }
+
+    public static class EvenFilter implements EventFilter<Integer> {
+        @Override
+        public boolean accept(Integer event) {
+            return event % 2 == 0;
+        }
+    }
+
+    public static class FailingFilter implements EventFilter<Object> {
+        @Override
+        public boolean accept(Object event) {
+            throw new AssertionError("filter failed");
+        }
+    }
+
+    public static class EvenSubscriber {
+        final List<Integer> events = new ArrayList<>();
+
+        @Subscribe(filter = EvenFilter.class)
+        public void onEvent(Integer event) {
+            events.add(event);
+        }
+    }
+
+    public static class FailingFilterSubscriber {
+        final List<String> events = new ArrayList<>();
+
+        @Subscribe(filter = FailingFilter.class)
+        public void onEvent(String event) {
+            events.add(event);
+        }
+    }
+
+    public static class MismatchedFilterSubscriber {
+        @Subscribe(filter = EvenFilter.class)
+        public void onEvent(String event) {
+        }
+    }
+
+    public static class ExceptionSubscriber {
+        final List<SubscriberExceptionEvent> events = new ArrayList<>();
+
+        @Subscribe
+        public void onEvent(SubscriberExceptionEvent event) {
+            events.add(event);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 带键的注册 {@link EventBus#register(Object, Object)} 与发布 {@link EventBus#post(Object, Object)}
+ */
+public class KeyedPostTest {
+    private final List<String> calls = new ArrayList<>();
+
+    @Test
+    public void keyedPostReachesOnlyMatchingKeyedSubscribers() {
+        EventBus eventBus = EventBus.builder().build();
+        eventBus.register(new Recorder("first", calls), "first");
+        eventBus.register(new Recorder("second", calls), "second");
+        eventBus.register(new Recorder("unkeyed", calls));
+
+        eventBus.post("event", "first");
+        assertEquals(Arrays.asList("unkeyed", "first"), calls);
+
+        calls.clear();
+        // 键按 equals 比较
+        eventBus.post("event", new String("second"));
+        assertEquals(Arrays.asList("unkeyed", "second"), calls);
+
+        calls.clear();
+        eventBus.post("event", "other");
+        assertEquals(Arrays.asList("unkeyed"), calls);
+    }
+
+    @Test
+    public void unkeyedPostSkipsKeyedSubscribers() {
+        EventBus eventBus = EventBus.builder().build();
+        eventBus.register(new Recorder("keyed", calls), "key");
+
+        eventBus.post("event");
+
+        assertTrue(calls.isEmpty());
+        assertTrue(eventBus.hasSubscriberForEvent(String.class));
+    }
+
+    @Test
+    public void keyedAndUnkeyedSubscribersAreMergedByPriority() {
+        EventBus eventBus = EventBus.builder().build();
+        eventBus.register(new Recorder("unkeyed", calls));
+        eventBus.register(new HighPriorityRecorder("keyed-high", calls), "key");
+        eventBus.register(new Recorder("keyed", calls), "key");
+
+        eventBus.post("event", "key");
+
+        // 优先级高的在前，相同优先级时不带键的订阅者在前
+        assertEquals(Arrays.asList("keyed-high", "unkeyed", "keyed"), calls);
+    }
+
+    @Test
+    public void keyedPostReachesSupertypeSubscribers() {
+        EventBus eventBus = EventBus.builder().build();
+        eventBus.register(new ObjectRecorder("object", calls), "key");
+
+        eventBus.post("event", "key");
+
+        assertEquals(Arrays.asList("object"), calls);
+    }
+
+    @Test
+    public void unregisterRemovesKeyedSubscriptions() {
+        EventBus eventBus = EventBus.builder().build();
+        Recorder recorder = new Recorder("keyed", calls);
+        eventBus.register(recorder, "key");
+        eventBus.unregister(recorder);
+
+        eventBus.post("event", "key");
+
+        assertTrue(calls.isEmpty());
+        assertFalse(eventBus.hasSubscriberForEvent(String.class));
+    }
+
+    @Test
+    public void subscriberCanOnlyBeRegisteredOnce() {
+        EventBus eventBus = EventBus.builder().build();
+        Recorder recorder = new Recorder("keyed", calls);
+        eventBus.register(recorder, "key");
+        try {
+            eventBus.register(recorder, "other");
+            fail("Expected EventBusException");
+        } catch (EventBusException expected) {
+            // 期望的异常
+        }
+        try {
+            eventBus.register(recorder);
+            fail("Expected EventBusException");
+        } catch (EventBusException expected) {
+            // 期望的异常
+        }
+    }
+
+    public static class Recorder {
+        final String name;
+        final List<String> calls;
+
+        Recorder(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        @Subscribe
+        public void onEvent(String event) {
+            calls.add(name);
+        }
+    }
+
+    public static class HighPriorityRecorder {
+        final String name;
+        final List<String> calls;
+
+        HighPriorityRecorder(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        @Subscribe(priority = 1)
+        public void onEvent(String event) {
+            calls.add(name);
+        }
+    }
+
+    public static class ObjectRecorder {
+        final String name;
+        final List<String> calls;
+
+        ObjectRecorder(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        @Subscribe
+        public void onEvent(Object event) {
+            calls.add(name);
+        }
+    }
+}
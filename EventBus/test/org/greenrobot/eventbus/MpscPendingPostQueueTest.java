@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 无锁的多生产者、单消费者队列 {@link MpscPendingPostQueue}
+ */
+public class MpscPendingPostQueueTest {
+
+    @Test
+    public void pollsInEnqueueOrder() {
+        MpscPendingPostQueue queue = new MpscPendingPostQueue();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        PendingPost first = PendingPost.newPendingPost(null, 1);
+        PendingPost second = PendingPost.newPendingPost(null, 2);
+        PendingPost third = PendingPost.newPendingPost(null, 3);
+        queue.enqueue(first);
+        second.next = third;
+        queue.enqueueAll(second, third);
+        assertFalse(queue.isEmpty());
+
+        assertSame(first, queue.poll());
+        assertSame(second, queue.pollIfLinked());
+        assertSame(third, queue.poll());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+
+        // 取出最后一个元素后队列只剩桩节点，可以继续使用
+        queue.enqueue(first);
+        assertSame(first, queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(timeout = 60000)
+    public void keepsPerProducerOrderWithoutLossOrDuplication() throws Exception {
+        final MpscPendingPostQueue queue = new MpscPendingPostQueue();
+        final int producers = 4;
+        final int perProducer = 50000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perProducer; i++) {
+                        if (i % 10 == 0) {
+                            // 夹杂批量入队
+                            PendingPost first = PendingPost.newPendingPost(null, new Item(producer, i));
+                            PendingPost last = PendingPost.newPendingPost(null, new Item(producer, i + 1));
+                            first.next = last;
+                            queue.enqueueAll(first, last);
+                            i++;
+                        } else {
+                            queue.enqueue(PendingPost.newPendingPost(null, new Item(producer, i)));
+                        }
+                    }
+                }
+            });
+            threads[p].start();
+        }
+
+        // 每个生产者下一个期望的序号，乱序、丢失或重复都会使序号不连续
+        int[] expected = new int[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            PendingPost pendingPost = queue.poll(1000);
+            if (pendingPost == null) {
+                fail("Timed out after " + received + " events");
+            }
+            Item item = (Item) pendingPost.event;
+            if (item.sequence != expected[item.producer]) {
+                fail("Producer " + item.producer + ": expected " + expected[item.producer]
+                        + ", got " + item.sequence);
+            }
+            expected[item.producer]++;
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(timeout = 30000)
+    public void enqueueWakesConsumerParkedWithTimeout() throws Exception {
+        final MpscPendingPostQueue queue = new MpscPendingPostQueue();
+        final PendingPost[] result = new PendingPost[1];
+        final long[] waitedMillis = new long[1];
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                try {
+                    result[0] = queue.poll(20000);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                waitedMillis[0] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            }
+        });
+        consumer.start();
+        // 等待消费者进入限时等待
+        long deadline = System.currentTimeMillis() + 10000;
+        while (consumer.getState() != Thread.State.TIMED_WAITING) {
+            assertTrue("Consumer did not park", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+
+        PendingPost pendingPost = PendingPost.newPendingPost(null, "event");
+        queue.enqueue(pendingPost);
+        consumer.join(10000);
+
+        assertFalse(consumer.isAlive());
+        assertSame(pendingPost, result[0]);
+        assertTrue("Consumer waited " + waitedMillis[0] + " ms", waitedMillis[0] < 10000);
+    }
+
+    @Test
+    public void timedPollReturnsNullAfterTimeout() throws InterruptedException {
+        MpscPendingPostQueue queue = new MpscPendingPostQueue();
+        long start = System.nanoTime();
+        assertNull(queue.poll(50));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 49);
+
+        // 超时后入队的事件仍能取出
+        queue.enqueue(PendingPost.newPendingPost(null, "event"));
+        assertNotNull(queue.poll(50));
+        assertTrue(queue.isEmpty());
+    }
+
+    static final class Item {
+        final int producer;
+        final int sequence;
+
+        Item(int producer, int sequence) {
+            this.producer = producer;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link PendingPost} 对象池 {@link PendingPostPool}
+ */
+public class PendingPostPoolTest {
+
+    @Test
+    public void releasedPendingPostIsClearedBeforeReuse() {
+        Subscription subscription = new Subscription(new Object(), null);
+        PendingPost pendingPost = PendingPost.obtainPendingPost(subscription, "first");
+        PendingPost.releasePendingPost(pendingPost);
+        assertNull(pendingPost.event);
+        assertNull(pendingPost.subscription);
+
+        // 同一线程中刚释放的对象最先被复用
+        PendingPost reused = PendingPost.obtainPendingPost(subscription, "second");
+        assertSame(pendingPost, reused);
+        assertEquals("second", reused.event);
+        assertSame(subscription, reused.subscription);
+        assertNull(reused.next);
+        PendingPost.releasePendingPost(reused);
+    }
+
+    @Test
+    public void reusesBatchesAcrossThreads() throws InterruptedException {
+        final PendingPostPool pool = new PendingPostPool();
+        final PendingPost[] released = new PendingPost[PendingPostPool.BATCH_SIZE + 1];
+        Thread releaser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                // 释放满一批后再释放一个，整批放入共享槽位
+                for (int i = 0; i < released.length; i++) {
+                    released[i] = PendingPost.newPendingPost(null, null);
+                    pool.release(released[i]);
+                }
+            }
+        });
+        releaser.start();
+        releaser.join();
+
+        Set<PendingPost> obtained = Collections.newSetFromMap(new IdentityHashMap<PendingPost, Boolean>());
+        PendingPost pendingPost;
+        while ((pendingPost = pool.obtain()) != null) {
+            assertTrue("Obtained twice", obtained.add(pendingPost));
+        }
+        assertEquals(PendingPostPool.BATCH_SIZE, obtained.size());
+    }
+
+    @Test(timeout = 60000)
+    public void neverHandsOutAPendingPostTwice() throws Exception {
+        final PendingPostPool pool = new PendingPostPool();
+        final int threads = 2;
+        final int perThread = 50000;
+        final Set<PendingPost> inUse =
+                Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<PendingPost, Boolean>()));
+        final BlockingQueue<PendingPost> handOff = new ArrayBlockingQueue<>(1024);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        Thread[] workers = new Thread[threads * 2];
+        for (int t = 0; t < threads; t++) {
+            // 生产者获取后交给消费者释放，与发布线程和后台线程的使用方式相同
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        PendingPost pendingPost = pool.obtain();
+                        if (pendingPost == null) {
+                            pendingPost = PendingPost.newPendingPost(null, null);
+                        } else if (pendingPost.event != null) {
+                            failure.compareAndSet(null, "Obtained a PendingPost that was not cleared");
+                        }
+                        if (!inUse.add(pendingPost)) {
+                            failure.compareAndSet(null, "PendingPost handed out twice");
+                        }
+                        pendingPost.event = Thread.currentThread();
+                        try {
+                            handOff.put(pendingPost);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            });
+            workers[threads + t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        PendingPost pendingPost;
+                        try {
+                            pendingPost = handOff.take();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        inUse.remove(pendingPost);
+                        pendingPost.event = null;
+                        pool.release(pendingPost);
+                    }
+                }
+            });
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertNull(failure.get());
+        assertTrue(inUse.isEmpty());
+    }
+}
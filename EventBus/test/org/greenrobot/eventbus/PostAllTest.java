@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 批量发布 {@link EventBus#postAll(java.util.Collection)}
+ */
+public class PostAllTest {
+
+    @Test
+    public void deliversInPostOrder() {
+        EventBus eventBus = EventBus.builder().build();
+        PostingSubscriber subscriber = new PostingSubscriber();
+        eventBus.register(subscriber);
+
+        eventBus.postAll(Arrays.asList("a", "b", "c"));
+
+        assertEquals(Arrays.asList("a", "b", "c"), subscriber.events);
+    }
+
+    @Test
+    public void nullElementRejectsWholeBatch() {
+        EventBus eventBus = EventBus.builder().build();
+        PostingSubscriber subscriber = new PostingSubscriber();
+        eventBus.register(subscriber);
+
+        try {
+            eventBus.postAll(Arrays.asList("a", null, "b"));
+            fail("Expected NullPointerException");
+        } catch (NullPointerException expected) {
+            // 期望的异常
+        }
+        assertTrue(subscriber.events.isEmpty());
+
+        // 之前批次的事件没有残留在事件队列中
+        eventBus.post("c");
+        assertEquals(Arrays.asList("c"), subscriber.events);
+    }
+
+    @Test(timeout = 10000)
+    public void asyncBatchDeliversEveryEvent() throws InterruptedException {
+        EventBus eventBus = EventBus.builder().build();
+        AsyncSubscriber subscriber = new AsyncSubscriber(100);
+        eventBus.register(subscriber);
+        List<Object> events = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            events.add(i);
+        }
+
+        eventBus.postAll(events);
+
+        assertTrue(subscriber.latch.await(5, TimeUnit.SECONDS));
+    }
+
+    public static class PostingSubscriber {
+        final List<String> events = new ArrayList<>();
+
+        @Subscribe
+        public void onEvent(String event) {
+            events.add(event);
+        }
+    }
+
+    public static class AsyncSubscriber {
+        final CountDownLatch latch;
+
+        AsyncSubscriber(int count) {
+            latch = new CountDownLatch(count);
+        }
+
+        @Subscribe(threadMode = ThreadMode.ASYNC)
+        public void onEvent(Integer event) {
+            latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * 发布路径的内存分配预算
+ * 通过 {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)} 测量发布线程分配的字节数，
+ * 稳定状态下发布到 {@link ThreadMode#POSTING} 订阅者、以及没有订阅者的发布都不应分配内存
+ */
+public class PostAllocationTest {
+
+    // 预热次数，使分发计划、调用器、ThreadLocal 等都已创建，并让 JIT 完成编译
+    private static final int WARMUP_POSTS = 50000;
+    // 测量的发布次数
+    private static final int POSTS = 100000;
+
+    private com.sun.management.ThreadMXBean threadMXBean;
+
+    @Before
+    public void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        if (!threadMXBean.isThreadAllocatedMemoryEnabled()) {
+            threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        }
+    }
+
+    @Test
+    public void postToPostingSubscribersDoesNotAllocate() {
+        EventBus eventBus = EventBus.builder().build();
+        PostingSubscriber first = new PostingSubscriber();
+        PostingSubscriber second = new PostingSubscriber();
+        eventBus.register(first);
+        eventBus.register(second);
+
+        long bytes = measureAllocatedBytes(eventBus, new AllocationTestEvent());
+
+        assertEquals(WARMUP_POSTS + POSTS, first.count);
+        assertEquals(WARMUP_POSTS + POSTS, second.count);
+        assertAllocationFree(bytes);
+    }
+
+    @Test
+    public void postWithoutSubscribersDoesNotAllocate() {
+        // NoSubscriberEvent 是每次发布新建的事件对象，这里只测量发布路径本身
+        EventBus eventBus = EventBus.builder().sendNoSubscriberEvent(false).build();
+
+        long bytes = measureAllocatedBytes(eventBus, new AllocationTestEvent());
+
+        assertAllocationFree(bytes);
+    }
+
+    /**
+     * 预热后测量发布 {@link #POSTS} 次分配的字节数，已扣除测量本身的开销
+     */
+    private long measureAllocatedBytes(EventBus eventBus, Object event) {
+        for (int i = 0; i < WARMUP_POSTS; i++) {
+            eventBus.post(event);
+        }
+        long threadId = Thread.currentThread().getId();
+        long start = threadMXBean.getThreadAllocatedBytes(threadId);
+        long overhead = threadMXBean.getThreadAllocatedBytes(threadId) - start;
+        start = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < POSTS; i++) {
+            eventBus.post(event);
+        }
+        long end = threadMXBean.getThreadAllocatedBytes(threadId);
+        return end - start - overhead;
+    }
+
+    private static void assertAllocationFree(long bytes) {
+        // 平均每次发布不到 1 字节，允许测量本身和偶发的一次性分配，任何按次分配都会超出
+        assertTrue("Posting allocated " + bytes + " bytes for " + POSTS + " posts", bytes < POSTS);
+    }
+
+    public static class AllocationTestEvent {
+    }
+
+    public static class PostingSubscriber {
+        int count;
+
+        @Subscribe
+        public void onEvent(AllocationTestEvent event) {
+            count++;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 批量注册 {@link EventBus#registerAll(java.util.Collection)} 与逐个注册 {@link EventBus#register(Object)} 等价
+ */
+public class RegisterAllTest {
+
+    @Test
+    public void registerAllDeliversInSameOrderAsSequentialRegister() {
+        List<String> sequentialCalls = new ArrayList<>();
+        EventBus sequential = EventBus.builder().build();
+        for (Object subscriber : createSubscribers(sequentialCalls)) {
+            sequential.register(subscriber);
+        }
+
+        List<String> batchCalls = new ArrayList<>();
+        EventBus batch = EventBus.builder().build();
+        batch.registerAll(createSubscribers(batchCalls));
+
+        sequential.post("event");
+        sequential.post(1);
+        batch.post("event");
+        batch.post(1);
+
+        assertEquals(Arrays.asList("high-a:string", "high-b:string", "low-a:string", "both:string", "low-b:string",
+                "both:object", "low-a:object", "low-b:object",
+                "both:integer", "both:object", "low-a:object", "low-b:object"), sequentialCalls);
+        assertEquals(sequentialCalls, batchCalls);
+    }
+
+    @Test
+    public void registerAllKeepsOrderAfterExistingSubscribers() {
+        List<String> sequentialCalls = new ArrayList<>();
+        EventBus sequential = EventBus.builder().build();
+        sequential.register(new HighPriority("existing-high", sequentialCalls));
+        sequential.register(new LowPriority("existing-low", sequentialCalls));
+        for (Object subscriber : createSubscribers(sequentialCalls)) {
+            sequential.register(subscriber);
+        }
+
+        List<String> batchCalls = new ArrayList<>();
+        EventBus batch = EventBus.builder().build();
+        batch.register(new HighPriority("existing-high", batchCalls));
+        batch.register(new LowPriority("existing-low", batchCalls));
+        batch.registerAll(createSubscribers(batchCalls));
+
+        sequential.post("event");
+        batch.post("event");
+
+        assertEquals(sequentialCalls, batchCalls);
+        // 相同优先级时先注册的在前
+        assertEquals("existing-high:string", batchCalls.get(0));
+        assertEquals("existing-low:string", batchCalls.get(3));
+    }
+
+    @Test
+    public void registerAllDeliversStickyEventsLikeRegister() {
+        List<String> calls = new ArrayList<>();
+        EventBus eventBus = EventBus.builder().build();
+        eventBus.postSticky("sticky");
+
+        eventBus.registerAll(Arrays.asList(new StickySubscriber("a", calls), new StickySubscriber("b", calls)));
+
+        assertEquals(Arrays.asList("a:sticky", "b:sticky"), calls);
+    }
+
+    @Test
+    public void duplicateSubscriberRegistersNothing() {
+        List<String> calls = new ArrayList<>();
+        EventBus eventBus = EventBus.builder().build();
+        LowPriority first = new LowPriority("first", calls);
+        try {
+            eventBus.registerAll(Arrays.asList(first, new LowPriority("second", calls), first));
+            fail("Expected EventBusException");
+        } catch (EventBusException expected) {
+            // 期望的异常
+        }
+
+        assertFalse(eventBus.isRegistered(first));
+        assertFalse(eventBus.hasSubscriberForEvent(String.class));
+    }
+
+    @Test
+    public void alreadyRegisteredSubscriberRegistersNothing() {
+        List<String> calls = new ArrayList<>();
+        EventBus eventBus = EventBus.builder().build();
+        LowPriority registered = new LowPriority("registered", calls);
+        LowPriority other = new LowPriority("other", calls);
+        eventBus.register(registered);
+        try {
+            eventBus.registerAll(Arrays.asList(other, registered));
+            fail("Expected EventBusException");
+        } catch (EventBusException expected) {
+            // 期望的异常
+        }
+
+        assertFalse(eventBus.isRegistered(other));
+        eventBus.post("event");
+        assertEquals(Arrays.asList("registered:string", "registered:object"), calls);
+    }
+
+    @Test
+    public void registerAllWithEmptyCollectionDoesNothing() {
+        EventBus eventBus = EventBus.builder().build();
+        eventBus.registerAll(new ArrayList<Object>());
+
+        assertFalse(eventBus.hasSubscriberForEvent(String.class));
+        eventBus.register(new LowPriority("after", new ArrayList<String>()));
+        assertTrue(eventBus.hasSubscriberForEvent(String.class));
+    }
+
+    private static List<Object> createSubscribers(List<String> calls) {
+        // 优先级交错，且包含同一个类的多个实例和订阅多个事件类型的订阅者
+        return Arrays.<Object>asList(
+                new LowPriority("low-a", calls),
+                new HighPriority("high-a", calls),
+                new MultipleEvents("both", calls),
+                new HighPriority("high-b", calls),
+                new LowPriority("low-b", calls));
+    }
+
+    public static class LowPriority {
+        final String name;
+        final List<String> calls;
+
+        LowPriority(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        @Subscribe
+        public void onEvent(String event) {
+            calls.add(name + ":string");
+        }
+
+        @Subscribe(priority = -1)
+        public void onEvent(Object event) {
+            calls.add(name + ":object");
+        }
+    }
+
+    public static class HighPriority {
+        final String name;
+        final List<String> calls;
+
+        HighPriority(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        @Subscribe(priority = 5)
+        public void onEvent(String event) {
+            calls.add(name + ":string");
+        }
+    }
+
+    public static class MultipleEvents {
+        final String name;
+        final List<String> calls;
+
+        MultipleEvents(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        @Subscribe
+        public void onEvent(String event) {
+            calls.add(name + ":string");
+        }
+
+        @Subscribe
+        public void onEvent(Integer event) {
+            calls.add(name + ":integer");
+        }
+
+        @Subscribe
+        public void onEvent(Object event) {
+            calls.add(name + ":object");
+        }
+    }
+
+    public static class StickySubscriber {
+        final String name;
+        final List<String> calls;
+
+        StickySubscriber(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        @Subscribe(sticky = true)
+        public void onEvent(String event) {
+            calls.add(name + ":" + event);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 黏性事件文件 {@link StickyEventFile} 的压缩和恢复
+ */
+public class StickyEventFileTest {
+    // 文件头 8 字节
+    private static final int HEADER_SIZE = 8;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("sticky", ".events");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        new File(file.getPath() + ".compact").delete();
+    }
+
+    @Test
+    public void reloadsLatestRecordsAfterCompaction() throws IOException {
+        StickyEventFile stickyEventFile = new StickyEventFile(file);
+        // 反复覆盖写入，远超初始的 64 KB 映射空间，触发多次压缩
+        for (int i = 0; i < 500; i++) {
+            stickyEventFile.put("A", data(i, 1000));
+            stickyEventFile.put("B", data(i + 1, 1000));
+        }
+        stickyEventFile.put("C", data(7, 10));
+        stickyEventFile.remove("B");
+        stickyEventFile.close();
+        assertFalse(new File(file.getPath() + ".compact").exists());
+
+        StickyEventFile reopened = new StickyEventFile(file);
+        assertEquals(Arrays.asList("A", "C"), reopened.getEventClassNames());
+        assertTrue(Arrays.equals(data(499, 1000), reopened.read("A")));
+        assertTrue(Arrays.equals(data(7, 10), reopened.read("C")));
+        assertNull(reopened.read("B"));
+        reopened.close();
+    }
+
+    @Test
+    public void ignoresCorruptTail() throws IOException {
+        StickyEventFile stickyEventFile = new StickyEventFile(file);
+        stickyEventFile.put("A", data(1, 10));
+        stickyEventFile.put("B", data(2, 10));
+        stickyEventFile.close();
+
+        // 将第二条记录的类型改为未知值，模拟写入过程中损坏的记录
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(HEADER_SIZE + recordSize("A", 10));
+        raf.write(7);
+        raf.close();
+
+        StickyEventFile reopened = new StickyEventFile(file);
+        assertEquals(Arrays.asList("A"), reopened.getEventClassNames());
+        // 损坏的记录被新的记录覆盖，之后的记录可以正常恢复
+        reopened.put("C", data(3, 10));
+        reopened.close();
+
+        StickyEventFile again = new StickyEventFile(file);
+        assertEquals(Arrays.asList("A", "C"), again.getEventClassNames());
+        assertTrue(Arrays.equals(data(3, 10), again.read("C")));
+        again.close();
+    }
+
+    @Test
+    public void ignoresTruncatedTail() throws IOException {
+        StickyEventFile stickyEventFile = new StickyEventFile(file);
+        stickyEventFile.put("A", data(1, 10));
+        stickyEventFile.put("B", data(2, 10));
+        stickyEventFile.close();
+
+        // 截断在第二条记录的类名长度中间
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(HEADER_SIZE + recordSize("A", 10) + 3);
+        raf.close();
+
+        StickyEventFile reopened = new StickyEventFile(file);
+        assertEquals(Arrays.asList("A"), reopened.getEventClassNames());
+        assertTrue(Arrays.equals(data(1, 10), reopened.read("A")));
+        reopened.close();
+    }
+
+    @Test
+    public void restoresCompactedFileWhenOriginalWasDeleted() throws IOException {
+        StickyEventFile stickyEventFile = new StickyEventFile(file);
+        stickyEventFile.put("A", data(1, 10));
+        stickyEventFile.close();
+        // 压缩删除原文件后、重命名之前退出时，只剩下完整的临时文件
+        File tempFile = new File(file.getPath() + ".compact");
+        assertTrue(file.renameTo(tempFile));
+
+        StickyEventFile reopened = new StickyEventFile(file);
+        assertEquals(Arrays.asList("A"), reopened.getEventClassNames());
+        assertFalse(tempFile.exists());
+        reopened.close();
+    }
+
+    private static byte[] data(int seed, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (seed + i);
+        }
+        return data;
+    }
+
+    private static int recordSize(String name, int dataLength) {
+        return 1 + 4 + name.length() + 4 + dataLength;
+    }
+}
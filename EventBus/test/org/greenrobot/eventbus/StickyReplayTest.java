@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 黏性事件历史回放 {@link Subscribe#replay()}
+ */
+public class StickyReplayTest {
+
+    @Test
+    public void replaysLatestEventsInPostOrder() {
+        EventBus eventBus = EventBus.builder().stickyEventHistory(ReplayEvent.class, 3).build();
+        for (int i = 1; i <= 5; i++) {
+            eventBus.postSticky(new ReplayEvent(i));
+        }
+        ReplaySubscriber subscriber = new ReplaySubscriber();
+        eventBus.register(subscriber);
+
+        assertEquals(Arrays.asList(3, 4, 5), subscriber.values());
+
+        eventBus.postSticky(new ReplayEvent(6));
+        assertEquals(Arrays.asList(3, 4, 5, 6), subscriber.values());
+    }
+
+    @Test
+    public void unconfiguredTypeKeepsHistoryFromFirstReplaySubscriber() {
+        EventBus eventBus = EventBus.builder().build();
+        eventBus.postSticky(new ReplayEvent(1));
+        eventBus.postSticky(new ReplayEvent(2));
+        ReplaySubscriber first = new ReplaySubscriber();
+        eventBus.register(first);
+        // 第一个回放订阅者注册之前只保留了最新的黏性事件
+        assertEquals(Arrays.asList(2), first.values());
+
+        eventBus.postSticky(new ReplayEvent(3));
+        eventBus.postSticky(new ReplayEvent(4));
+        ReplaySubscriber second = new ReplaySubscriber();
+        eventBus.register(second);
+        assertEquals(Arrays.asList(2, 3, 4), second.values());
+    }
+
+    @Test
+    public void registerAllReplaysLikeRegister() {
+        EventBus eventBus = EventBus.builder().stickyEventHistory(ReplayEvent.class, 3).build();
+        for (int i = 1; i <= 4; i++) {
+            eventBus.postSticky(new ReplayEvent(i));
+        }
+        ReplaySubscriber first = new ReplaySubscriber();
+        ReplaySubscriber second = new ReplaySubscriber();
+        eventBus.registerAll(Arrays.asList(first, second));
+
+        assertEquals(Arrays.asList(2, 3, 4), first.values());
+        assertEquals(Arrays.asList(2, 3, 4), second.values());
+    }
+
+    @Test(timeout = 10000)
+    public void stickyEventPostedDuringReplayArrivesAfterHistory() throws Exception {
+        final EventBus eventBus = EventBus.builder().stickyEventHistory(ReplayEvent.class, 3).build();
+        for (int i = 1; i <= 3; i++) {
+            eventBus.postSticky(new ReplayEvent(i));
+        }
+        ReplaySubscriber subscriber = new ReplaySubscriber() {
+            @Override
+            void onReceived(int value) throws InterruptedException {
+                if (value == 1) {
+                    // 回放第一个历史事件时，另一个线程发布新的黏性事件并等待其发布结束
+                    Thread poster = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            eventBus.postSticky(new ReplayEvent(4));
+                        }
+                    });
+                    poster.start();
+                    poster.join();
+                }
+            }
+        };
+        eventBus.register(subscriber);
+
+        assertEquals(Arrays.asList(1, 2, 3, 4), subscriber.values());
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentPostStickyIsNeitherDuplicatedNorReordered() throws Exception {
+        final EventBus eventBus = EventBus.builder().stickyEventHistory(ReplayEvent.class, 3).build();
+        final int count = 20000;
+        final int subscriberCount = 100;
+        final int[] posted = new int[1];
+        Thread poster = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= count; i++) {
+                    eventBus.postSticky(new ReplayEvent(i));
+                    synchronized (posted) {
+                        posted[0] = i;
+                    }
+                }
+            }
+        });
+        poster.start();
+        List<ReplaySubscriber> subscribers = new ArrayList<>();
+        while (subscribers.size() < subscriberCount) {
+            int progress;
+            synchronized (posted) {
+                progress = posted[0];
+            }
+            if (progress >= subscribers.size() * (count / subscriberCount)) {
+                ReplaySubscriber subscriber = new ReplaySubscriber();
+                eventBus.register(subscriber);
+                subscribers.add(subscriber);
+            } else {
+                Thread.yield();
+            }
+        }
+        poster.join();
+
+        for (ReplaySubscriber subscriber : subscribers) {
+            List<Integer> values = subscriber.values();
+            assertTrue("Nothing received", !values.isEmpty());
+            // 回放的历史与之后的事件首尾相接：不重复、不乱序、不丢失
+            int first = values.get(0);
+            for (int i = 0; i < values.size(); i++) {
+                if (values.get(i) != first + i) {
+                    fail("Expected " + (first + i) + " at " + i + ", received " + values.get(i));
+                }
+            }
+            assertEquals(count, (int) values.get(values.size() - 1));
+        }
+    }
+
+    public static class ReplayEvent {
+        final int value;
+
+        ReplayEvent(int value) {
+            this.value = value;
+        }
+    }
+
+    public static class ReplaySubscriber {
+        private final List<Integer> values = new ArrayList<>();
+
+        @Subscribe(sticky = true, replay = 3)
+        public void onEvent(ReplayEvent event) throws InterruptedException {
+            synchronized (values) {
+                values.add(event.value);
+            }
+            onReceived(event.value);
+        }
+
+        void onReceived(int value) throws InterruptedException {
+        }
+
+        List<Integer> values() {
+            synchronized (values) {
+                return new ArrayList<>(values);
+            }
+        }
+    }
+}
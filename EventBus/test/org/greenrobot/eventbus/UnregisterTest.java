@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 注销 {@link EventBus#unregister(Object)} 在相同优先级的订阅关系中移除正确的一项
+ */
+public class UnregisterTest {
+    private final List<String> calls = new ArrayList<>();
+
+    @Test
+    public void unregisterRemovesOnlyTheGivenSubscriberAmongEqualPriorities() {
+        EventBus eventBus = EventBus.builder().build();
+        List<Recorder> recorders = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Recorder recorder = new Recorder(String.valueOf(i), calls);
+            recorders.add(recorder);
+            eventBus.register(recorder);
+        }
+
+        eventBus.unregister(recorders.get(3));
+        eventBus.unregister(recorders.get(0));
+        eventBus.unregister(recorders.get(7));
+        eventBus.post("event");
+
+        assertEquals(Arrays.asList("1", "2", "4", "5", "6"), calls);
+        assertFalse(eventBus.isRegistered(recorders.get(3)));
+        assertTrue(eventBus.isRegistered(recorders.get(4)));
+    }
+
+    @Test
+    public void unregisterMatchesByIdentityNotEquals() {
+        EventBus eventBus = EventBus.builder().build();
+        // 所有 Recorder 互相 equals，注销时仍然只能移除同一个对象的订阅关系
+        Recorder first = new Recorder("first", calls);
+        Recorder second = new Recorder("second", calls);
+        Recorder third = new Recorder("third", calls);
+        eventBus.register(first);
+        eventBus.register(second);
+        eventBus.register(third);
+
+        eventBus.unregister(second);
+        eventBus.post("event");
+
+        assertEquals(Arrays.asList("first", "third"), calls);
+    }
+
+    @Test
+    public void unregisterKeepsOrderAcrossPriorities() {
+        EventBus eventBus = EventBus.builder().build();
+        Recorder low = new Recorder("low", calls);
+        HighPriorityRecorder highA = new HighPriorityRecorder("high-a", calls);
+        HighPriorityRecorder highB = new HighPriorityRecorder("high-b", calls);
+        Recorder lowB = new Recorder("low-b", calls);
+        eventBus.register(low);
+        eventBus.register(highA);
+        eventBus.register(highB);
+        eventBus.register(lowB);
+
+        eventBus.unregister(highA);
+        eventBus.unregister(low);
+        eventBus.post("event");
+
+        assertEquals(Arrays.asList("high-b", "low-b"), calls);
+    }
+
+    @Test
+    public void reregisteredSubscriberMovesToEndOfItsPriority() {
+        EventBus eventBus = EventBus.builder().build();
+        Recorder first = new Recorder("first", calls);
+        Recorder second = new Recorder("second", calls);
+        Recorder third = new Recorder("third", calls);
+        eventBus.register(first);
+        eventBus.register(second);
+        eventBus.register(third);
+
+        eventBus.unregister(first);
+        eventBus.register(first);
+        eventBus.unregister(third);
+        eventBus.post("event");
+
+        assertEquals(Arrays.asList("second", "first"), calls);
+    }
+
+    @Test
+    public void unregisterAfterRegisterAllRemovesTheGivenSubscriber() {
+        EventBus eventBus = EventBus.builder().build();
+        Recorder existing = new Recorder("existing", calls);
+        Recorder first = new Recorder("first", calls);
+        Recorder second = new Recorder("second", calls);
+        Recorder third = new Recorder("third", calls);
+        eventBus.register(existing);
+        eventBus.registerAll(Arrays.asList(first, second, third));
+
+        eventBus.unregister(second);
+        eventBus.unregister(existing);
+        eventBus.post("event");
+
+        assertEquals(Arrays.asList("first", "third"), calls);
+    }
+
+    @Test
+    public void unregisterRemovesTheGivenKeyedSubscriber() {
+        EventBus eventBus = EventBus.builder().build();
+        Recorder first = new Recorder("first", calls);
+        Recorder second = new Recorder("second", calls);
+        Recorder third = new Recorder("third", calls);
+        eventBus.register(first, "key");
+        eventBus.register(second, "key");
+        eventBus.register(third, "key");
+
+        eventBus.unregister(second);
+        eventBus.post("event", "key");
+
+        assertEquals(Arrays.asList("first", "third"), calls);
+    }
+
+    @Test
+    public void unregisterLastSubscriberRemovesEventType() {
+        EventBus eventBus = EventBus.builder().build();
+        Recorder first = new Recorder("first", calls);
+        Recorder second = new Recorder("second", calls);
+        eventBus.register(first);
+        eventBus.register(second);
+
+        eventBus.unregister(first);
+        assertTrue(eventBus.hasSubscriberForEvent(String.class));
+        eventBus.unregister(second);
+        assertFalse(eventBus.hasSubscriberForEvent(String.class));
+
+        eventBus.post("event");
+        assertTrue(calls.isEmpty());
+    }
+
+    public static class Recorder {
+        final String name;
+        final List<String> calls;
+
+        Recorder(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        @Subscribe
+        public void onEvent(String event) {
+            calls.add(name);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Recorder;
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
+
+    public static class HighPriorityRecorder {
+        final String name;
+        final List<String> calls;
+
+        HighPriorityRecorder(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        @Subscribe(priority = 1)
+        public void onEvent(String event) {
+            calls.add(name);
+        }
+    }
+}
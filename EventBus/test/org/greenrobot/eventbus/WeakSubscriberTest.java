@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * 弱引用订阅者 {@link EventBusBuilder#weakSubscribers(boolean)} 被回收后的清理
+ */
+public class WeakSubscriberTest {
+    // GC 的最大重试次数
+    private static final int MAX_GC_ATTEMPTS = 50;
+
+    @Test
+    public void collectedSubscriberIsPurgedOnNextPost() throws InterruptedException {
+        EventBus eventBus = EventBus.builder().weakSubscribers(true).sendNoSubscriberEvent(false).build();
+        WeakReference<Object> probe = registerUnreachableSubscriber(eventBus);
+        assertTrue(eventBus.hasSubscriberForEvent(WeakEvent.class));
+
+        assumeTrue("Subscriber was not collected", awaitCollected(probe));
+
+        // 发布时清理已被回收的订阅者；引用进入引用队列可能稍晚于被清除
+        boolean purged = false;
+        for (int i = 0; i < MAX_GC_ATTEMPTS && !purged; i++) {
+            eventBus.post(new WeakEvent());
+            purged = !eventBus.hasSubscriberForEvent(WeakEvent.class);
+            if (!purged) {
+                Thread.sleep(10);
+            }
+        }
+        assertTrue("Subscriptions of the collected subscriber were not removed", purged);
+    }
+
+    @Test
+    public void reachableSubscriberSurvivesPurge() throws InterruptedException {
+        EventBus eventBus = EventBus.builder().weakSubscribers(true).sendNoSubscriberEvent(false).build();
+        WeakSubscriber reachable = new WeakSubscriber();
+        eventBus.register(reachable);
+        WeakReference<Object> probe = registerUnreachableSubscriber(eventBus);
+
+        assumeTrue("Subscriber was not collected", awaitCollected(probe));
+        for (int i = 0; i < MAX_GC_ATTEMPTS; i++) {
+            eventBus.post(new WeakEvent());
+        }
+
+        assertTrue(eventBus.isRegistered(reachable));
+        assertTrue(eventBus.hasSubscriberForEvent(WeakEvent.class));
+        assertEquals(MAX_GC_ATTEMPTS, reachable.count);
+        eventBus.unregister(reachable);
+        assertFalse(eventBus.hasSubscriberForEvent(WeakEvent.class));
+    }
+
+    /**
+     * 注册一个不被任何强引用持有的订阅者，返回用于观察其是否被回收的弱引用
+     */
+    private static WeakReference<Object> registerUnreachableSubscriber(EventBus eventBus) {
+        WeakSubscriber subscriber = new WeakSubscriber();
+        eventBus.register(subscriber);
+        return new WeakReference<Object>(subscriber);
+    }
+
+    private static boolean awaitCollected(WeakReference<Object> probe) throws InterruptedException {
+        for (int i = 0; i < MAX_GC_ATTEMPTS && probe.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        return probe.get() == null;
+    }
+
+    public static class WeakEvent {
+    }
+
+    public static class WeakSubscriber {
+        int count;
+
+        @Subscribe
+        public void onEvent(WeakEvent event) {
+            count++;
+        }
+    }
+}
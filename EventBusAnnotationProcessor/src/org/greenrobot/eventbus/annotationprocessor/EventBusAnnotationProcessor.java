@@ -17,6 +17,7 @@ package org.greenrobot.eventbus.annotationprocessor;
 
 import net.ltgt.gradle.incap.IncrementalAnnotationProcessor;
 
+import org.greenrobot.eventbus.EventFilter;
 import org.greenrobot.eventbus.Subscribe;
 import org.greenrobot.eventbus.ThreadMode;
 
@@ -24,7 +25,9 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.processing.AbstractProcessor;
@@ -40,9 +43,11 @@ import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.MirroredTypeException;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.type.TypeVariable;
+import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
 import javax.tools.JavaFileObject;
 
@@ -159,9 +164,69 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
             messager.printMessage(Diagnostic.Kind.ERROR, "Subscriber method must have exactly 1 parameter", element);
             return false;
         }
+
+        if (element.getAnnotation(Subscribe.class).replay() < 0) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Replay depth must not be negative", element);
+            return false;
+        }
+
+        TypeElement filterElement = getFilterElement(element);
+        if (filterElement != null) {
+            String filterError = checkFilter(filterElement, getParamTypeMirror(parameters.get(0), null));
+            if (filterError != null) {
+                messager.printMessage(Diagnostic.Kind.ERROR, filterError, element);
+                return false;
+            }
+        }
         return true;
     }
 
+    /**
+     * Checks that the filter class declares the type argument of EventFilter and that the subscriber's
+     * event type is assignable to it; otherwise the filter would fail when the subscriber is registered.
+     *
+     * @return the error message, or null if the filter is valid
+     */
+    private String checkFilter(TypeElement filterElement, TypeMirror eventType) {
+        DeclaredType filterType = findEventFilterType(filterElement.asType());
+        if (filterType == null) {
+            return "Event filter " + filterElement.getQualifiedName() + " must implement EventFilter";
+        }
+        List<? extends TypeMirror> typeArguments = filterType.getTypeArguments();
+        if (typeArguments.isEmpty()) {
+            return "Event filter " + filterElement.getQualifiedName()
+                    + " must implement EventFilter with a type argument, not the raw type";
+        }
+        Types typeUtils = processingEnv.getTypeUtils();
+        TypeMirror acceptedType = typeUtils.erasure(typeArguments.get(0));
+        if (!typeUtils.isAssignable(typeUtils.erasure(eventType), acceptedType)) {
+            return "Event filter " + filterElement.getQualifiedName() + " accepts " + acceptedType
+                    + ", which is not assignable from the event type " + eventType;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the EventFilter supertype of the given type, as declared by the type or one of its supertypes.
+     */
+    private DeclaredType findEventFilterType(TypeMirror type) {
+        for (TypeMirror supertype : processingEnv.getTypeUtils().directSupertypes(type)) {
+            if (supertype.getKind() != TypeKind.DECLARED) {
+                continue;
+            }
+            DeclaredType declaredType = (DeclaredType) supertype;
+            if (((TypeElement) declaredType.asElement()).getQualifiedName()
+                    .contentEquals(EventFilter.class.getName())) {
+                return declaredType;
+            }
+            DeclaredType found = findEventFilterType(supertype);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
     /**
      * Subscriber classes should be skipped if their class or any involved event class are not visible to the index.
      */
@@ -199,6 +264,12 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
                                 skipReason = "event type is not public";
                             }
                         }
+                        if (skipReason == null) {
+                            TypeElement filterElement = getFilterElement(method);
+                            if (filterElement != null && !isVisible(myPackage, filterElement)) {
+                                skipReason = "event filter class is not public";
+                            }
+                        }
                         if (skipReason != null) {
                             boolean added = classesToSkip.add(skipCandidate);
                             if (added) {
@@ -217,6 +288,27 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
         }
     }
 
+    /**
+     * Returns the filter class given in @Subscribe, or null if the default (no filter) is used.
+     * Class values of annotations are not loadable during processing, so the type is taken from the
+     * MirroredTypeException.
+     */
+    private TypeElement getFilterElement(ExecutableElement method) {
+        TypeMirror filterType;
+        try {
+            method.getAnnotation(Subscribe.class).filter();
+            return null;
+        } catch (MirroredTypeException e) {
+            filterType = e.getTypeMirror();
+        }
+        TypeElement filterElement = (TypeElement) processingEnv.getTypeUtils().asElement(filterType);
+        if (filterElement == null || filterElement.getQualifiedName().contentEquals(EventFilter.class.getName())
+                || filterElement.getQualifiedName().contentEquals(EventFilter.None.class.getCanonicalName())) {
+            return null;
+        }
+        return filterElement;
+    }
+
     private TypeMirror getParamTypeMirror(VariableElement param, Messager messager) {
         TypeMirror typeMirror = param.asType();
         // Check for generic type
@@ -293,7 +385,23 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
             List<String> parts = new ArrayList<>();
             parts.add(callPrefix + "(\"" + methodName + "\",");
             String lineEnd = "),";
-            if (subscribe.priority() == 0 && !subscribe.sticky()) {
+            TypeElement filterElement = getFilterElement(method);
+            // Replay depth only matters for sticky methods, see SubscriberMethod
+            int replay = subscribe.sticky() ? subscribe.replay() : 0;
+            if (filterElement != null || replay > 0) {
+                String filterClass = filterElement != null
+                        ? getClassString(filterElement, myPackage) + ".class" : "null";
+                parts.add(eventClass + ",");
+                parts.add("ThreadMode." + subscribe.threadMode().name() + ",");
+                parts.add(subscribe.priority() + ",");
+                parts.add(subscribe.sticky() + ",");
+                if (replay > 0) {
+                    parts.add(filterClass + ",");
+                    parts.add(replay + lineEnd);
+                } else {
+                    parts.add(filterClass + lineEnd);
+                }
+            } else if (subscribe.priority() == 0 && !subscribe.sticky()) {
                 if (subscribe.threadMode() == ThreadMode.POSTING) {
                     parts.add(eventClass + lineEnd);
                 } else {
@@ -317,6 +425,34 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
         }
     }
 
+    /**
+     * Writes an anonymous SubscriberInvoker calling the subscriber methods directly; the case labels match the
+     * positions of the SubscriberMethodInfo entries written by {@link #writeCreateSubscriberMethods}.
+     */
+    private void writeSubscriberInvoker(BufferedWriter writer, List<ExecutableElement> methods,
+                                        String subscriberClass, String myPackage) throws IOException {
+        writer.write("new SubscriberInvoker() {\n");
+        writer.write("            @Override\n");
+        writer.write("            public void invokeSubscriber(int methodIndex, Object subscriber, Object event)\n");
+        writer.write("                    throws Throwable {\n");
+        writer.write("                switch (methodIndex) {\n");
+        for (int i = 0; i < methods.size(); i++) {
+            ExecutableElement method = methods.get(i);
+            TypeMirror paramType = getParamTypeMirror(method.getParameters().get(0), null);
+            TypeElement paramElement = (TypeElement) processingEnv.getTypeUtils().asElement(paramType);
+            String eventClass = getClassString(paramElement, myPackage);
+            writer.write("                    case " + i + ":\n");
+            writeLine(writer, 6, "((" + subscriberClass + ") subscriber)." + method.getSimpleName() +
+                    "((" + eventClass + ") event);");
+            writer.write("                        break;\n");
+        }
+        writer.write("                    default:\n");
+        writer.write("                        throw new IllegalArgumentException(\"Unknown method index \" + methodIndex);\n");
+        writer.write("                }\n");
+        writer.write("            }\n");
+        writer.write("        }");
+    }
+
     private void createInfoIndexFile(String index) {
         BufferedWriter writer = null;
         try {
@@ -328,16 +464,19 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
             if (myPackage != null) {
                 writer.write("package " + myPackage + ";\n\n");
             }
+            writer.write("import org.greenrobot.eventbus.meta.EventTypeIndex;\n");
             writer.write("import org.greenrobot.eventbus.meta.SimpleSubscriberInfo;\n");
             writer.write("import org.greenrobot.eventbus.meta.SubscriberMethodInfo;\n");
             writer.write("import org.greenrobot.eventbus.meta.SubscriberInfo;\n");
-            writer.write("import org.greenrobot.eventbus.meta.SubscriberInfoIndex;\n\n");
+            writer.write("import org.greenrobot.eventbus.meta.SubscriberInfoIndex;\n");
+            writer.write("import org.greenrobot.eventbus.meta.SubscriberInvoker;\n\n");
             writer.write("import org.greenrobot.eventbus.ThreadMode;\n\n");
             writer.write("import java.util.HashMap;\n");
             writer.write("import java.util.Map;\n\n");
             writer.write("/** This class is generated by EventBus, do not edit. */\n");
-            writer.write("public class " + clazz + " implements SubscriberInfoIndex {\n");
+            writer.write("public class " + clazz + " implements SubscriberInfoIndex, EventTypeIndex {\n");
             writer.write("    private static final Map<Class<?>, SubscriberInfo> SUBSCRIBER_INDEX;\n\n");
+            writeEventTypeTables(writer, myPackage);
             writer.write("    static {\n");
             writer.write("        SUBSCRIBER_INDEX = new HashMap<Class<?>, SubscriberInfo>();\n\n");
             writeIndexLines(writer, myPackage);
@@ -353,6 +492,14 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
             writer.write("        } else {\n");
             writer.write("            return null;\n");
             writer.write("        }\n");
+            writer.write("    }\n\n");
+            writer.write("    @Override\n");
+            writer.write("    public Class<?>[] getEventTypes() {\n");
+            writer.write("        return EVENT_TYPES.clone();\n");
+            writer.write("    }\n\n");
+            writer.write("    @Override\n");
+            writer.write("    public int[][] getEventTypeHierarchies() {\n");
+            writer.write("        return EVENT_TYPE_HIERARCHIES.clone();\n");
             writer.write("    }\n");
             writer.write("}\n");
         } catch (IOException e) {
@@ -368,24 +515,151 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
         }
     }
 
-    private void writeIndexLines(BufferedWriter writer, String myPackage) throws IOException {
+    /**
+     * Writes dense ids for all indexed event types and their supertypes, and for each id the ids of its supertype
+     * closure in the order EventBus.lookupAllEventTypes uses at runtime. Event types with a supertype that is not
+     * visible to the index are left out and resolved at runtime as before. So are event types with any platform type
+     * in their hierarchy apart from java.lang.Object, e.g. String, enums (Enum implements Constable on newer JDKs),
+     * subclasses of EventObject or Exception: platform supertypes depend on the runtime version, so a table computed
+     * at compile time could disagree with the runtime lookup or reference classes missing on older runtimes.
+     */
+    private void writeEventTypeTables(BufferedWriter writer, String myPackage) throws IOException {
+        Map<TypeElement, Integer> ids = new LinkedHashMap<>();
         for (TypeElement subscriberTypeElement : methodsByClass.keySet()) {
-            if (classesToSkip.contains(subscriberTypeElement)) {
+            if (classesToSkip.contains(subscriberTypeElement) || !isVisible(myPackage, subscriberTypeElement)) {
                 continue;
             }
+            for (ExecutableElement method : methodsByClass.get(subscriberTypeElement)) {
+                TypeMirror paramType = getParamTypeMirror(method.getParameters().get(0), null);
+                if (!(paramType instanceof DeclaredType)) {
+                    continue;
+                }
+                TypeElement eventType = (TypeElement) ((DeclaredType) paramType).asElement();
+                List<TypeElement> hierarchy = getEventTypeHierarchy(eventType);
+                if (!hasPlatformSupertype(hierarchy) && isAccessible(myPackage, hierarchy)) {
+                    for (TypeElement type : hierarchy) {
+                        if (!ids.containsKey(type)) {
+                            ids.put(type, ids.size());
+                        }
+                    }
+                }
+            }
+        }
 
-            String subscriberClass = getClassString(subscriberTypeElement, myPackage);
-            if (isVisible(myPackage, subscriberTypeElement)) {
-                writeLine(writer, 2,
-                        "putIndex(new SimpleSubscriberInfo(" + subscriberClass + ".class,",
-                        "true,", "new SubscriberMethodInfo[] {");
-                List<ExecutableElement> methods = methodsByClass.get(subscriberTypeElement);
-                writeCreateSubscriberMethods(writer, methods, "new SubscriberMethodInfo", myPackage);
-                writer.write("        }));\n\n");
-            } else {
-                writer.write("        // Subscriber not visible to index: " + subscriberClass + "\n");
+        writer.write("    private static final Class<?>[] EVENT_TYPES = {\n");
+        for (TypeElement type : ids.keySet()) {
+            writer.write("        " + getClassString(type, myPackage) + ".class,\n");
+        }
+        writer.write("    };\n\n");
+        writer.write("    private static final int[][] EVENT_TYPE_HIERARCHIES = {\n");
+        for (TypeElement type : ids.keySet()) {
+            StringBuilder line = new StringBuilder("        {");
+            List<TypeElement> hierarchy = getEventTypeHierarchy(type);
+            for (int i = 0; i < hierarchy.size(); i++) {
+                if (i > 0) {
+                    line.append(", ");
+                }
+                line.append(ids.get(hierarchy.get(i)));
+            }
+            writer.write(line.append("},\n").toString());
+        }
+        writer.write("    };\n\n");
+    }
+
+    /**
+     * Mirrors EventBus.lookupAllEventTypes: the type itself, its interfaces (recursively, without duplicates), then
+     * the same for each superclass.
+     */
+    private List<TypeElement> getEventTypeHierarchy(TypeElement eventType) {
+        List<TypeElement> types = new ArrayList<>();
+        TypeElement clazz = eventType;
+        while (clazz != null) {
+            types.add(clazz);
+            addInterfaces(types, clazz.getInterfaces());
+            TypeMirror superclass = clazz.getSuperclass();
+            clazz = superclass.getKind() == TypeKind.DECLARED
+                    ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+        return types;
+    }
+
+    private void addInterfaces(List<TypeElement> types, List<? extends TypeMirror> interfaces) {
+        for (TypeMirror interfaceType : interfaces) {
+            TypeElement interfaceElement = (TypeElement) ((DeclaredType) interfaceType).asElement();
+            if (!types.contains(interfaceElement)) {
+                types.add(interfaceElement);
+                addInterfaces(types, interfaceElement.getInterfaces());
+            }
+        }
+    }
+
+    /** Checks whether the given hierarchy contains a platform type other than java.lang.Object. */
+    private boolean hasPlatformSupertype(List<TypeElement> hierarchy) {
+        for (TypeElement type : hierarchy) {
+            if (isPlatformType(type) && !type.getQualifiedName().contentEquals(Object.class.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isPlatformType(TypeElement type) {
+        String name = type.getQualifiedName().toString();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("android.");
+    }
+
+    /** Checks that all given types, including their enclosing types, can be referenced from the index. */
+    private boolean isAccessible(String myPackage, List<TypeElement> types) {
+        for (TypeElement type : types) {
+            Element element = type;
+            while (element instanceof TypeElement) {
+                if (!isVisible(myPackage, (TypeElement) element)) {
+                    return false;
+                }
+                element = element.getEnclosingElement();
             }
         }
+        return true;
+    }
+
+    private void writeIndexLines(BufferedWriter writer, String myPackage) throws IOException {
+        Set<TypeElement> written = new HashSet<>();
+        for (TypeElement subscriberTypeElement : methodsByClass.keySet()) {
+            writeIndexLines(writer, myPackage, subscriberTypeElement, written);
+        }
+    }
+
+    /**
+     * Writes the info of the given subscriber class after the info of its superclass, so the info can be linked
+     * directly to its super info instead of EventBus looking it up (or instantiating it) at runtime.
+     */
+    private void writeIndexLines(BufferedWriter writer, String myPackage, TypeElement subscriberTypeElement,
+                                 Set<TypeElement> written) throws IOException {
+        if (classesToSkip.contains(subscriberTypeElement) || !written.add(subscriberTypeElement)) {
+            return;
+        }
+        String subscriberClass = getClassString(subscriberTypeElement, myPackage);
+        if (!isVisible(myPackage, subscriberTypeElement)) {
+            writer.write("        // Subscriber not visible to index: " + subscriberClass + "\n");
+            return;
+        }
+        TypeElement superclass = getSuperclass(subscriberTypeElement);
+        boolean linkSuperclass = superclass != null && methodsByClass.containsKey(superclass)
+                && !classesToSkip.contains(superclass) && isVisible(myPackage, superclass);
+        if (linkSuperclass) {
+            writeIndexLines(writer, myPackage, superclass, written);
+        }
+        writeLine(writer, 2,
+                "putIndex(new SimpleSubscriberInfo(" + subscriberClass + ".class,",
+                "true,", "new SubscriberMethodInfo[] {");
+        List<ExecutableElement> methods = methodsByClass.get(subscriberTypeElement);
+        writeCreateSubscriberMethods(writer, methods, "new SubscriberMethodInfo", myPackage);
+        writer.write("        }, ");
+        writeSubscriberInvoker(writer, methods, subscriberClass, myPackage);
+        if (linkSuperclass) {
+            writer.write(", SUBSCRIBER_INDEX.get(" + getClassString(superclass, myPackage) + ".class)");
+        }
+        writer.write("));\n\n");
     }
 
     private boolean isVisible(String myPackage, TypeElement typeElement) {
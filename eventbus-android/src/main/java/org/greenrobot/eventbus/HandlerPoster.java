@@ -20,6 +20,8 @@ import android.os.Looper;
 import android.os.Message;
 import android.os.SystemClock;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * 主线程事件发布器，基于 Handler 是实现
  * 实现了 Poster 接口，这就是一个普通的 Handler，只是它的 Looper 使用的是主线程的 「Main Looper」，可以将消息分发到主线程中
@@ -31,13 +33,13 @@ import android.os.SystemClock;
  */
 public class HandlerPoster extends Handler implements Poster {
 
-    // 事件队列
-    private final PendingPostQueue queue;
+    // 事件队列，只有主线程消费，使用无锁队列
+    private final MpscPendingPostQueue queue;
     // 处理消息最大间隔时间 默认10ms，每次循环发布消息的时间超过该值时，就会让出主线程的使用权，等待下次调度再继续发布事件
     private final int maxMillisInsideHandleMessage;
     private final EventBus eventBus;
-    // 此 Handle 是否活跃
-    private boolean handlerActive;
+    // 此 Handle 是否活跃，通过 CAS 保证同一时刻最多只有一个待处理的消息
+    private final AtomicBoolean handlerActive = new AtomicBoolean();
 
     /**
      * 唯一构造
@@ -50,7 +52,7 @@ public class HandlerPoster extends Handler implements Poster {
         super(looper);
         this.eventBus = eventBus;
         this.maxMillisInsideHandleMessage = maxMillisInsideHandleMessage;
-        queue = new PendingPostQueue();
+        queue = new MpscPendingPostQueue();
     }
 
     /**
@@ -61,21 +63,17 @@ public class HandlerPoster extends Handler implements Poster {
      */
     public void enqueue(Subscription subscription, Object event) {
         // 获取一个 PendingPost，实际上将 subscription、event 包装成为一个 PendingPost
-        PendingPost pendingPost = PendingPost.obtainPendingPost(subscription, event);
-        // 加锁 监视器为当前对象
-        synchronized (this) {
-            // 将获取到的 PendingPost 包装类入队
-            queue.enqueue(pendingPost);
-            // 判断此发布器是否活跃，如果活跃就不执行，等待 Looper 调度上一个消息，重新进入发布处理
-            if (!handlerActive) {
-                // 将发布器设置为活跃状态
-                handlerActive = true;
-                // sendMessage
-                // 划重点!!!
-                // 此处没有使用 new Message()，而是使用了 obtainMessage()，该方法将从全局的消息对象池中复用旧的对象，这比直接创建要更高效
-                if (!sendMessage(obtainMessage())) {
-                    throw new EventBusException("Could not send handler message");
-                }
+        PendingPost pendingPost = eventBus.obtainPendingPost(subscription, event);
+        // 将获取到的 PendingPost 包装类无锁入队
+        queue.enqueue(pendingPost);
+        // 判断此发布器是否活跃，如果活跃就不执行，等待 Looper 调度上一个消息，重新进入发布处理
+        // 先读后 CAS，发布器活跃时不产生写竞争
+        if (!handlerActive.get() && handlerActive.compareAndSet(false, true)) {
+            // sendMessage
+            // 划重点!!!
+            // 此处没有使用 new Message()，而是使用了 obtainMessage()，该方法将从全局的消息对象池中复用旧的对象，这比直接创建要更高效
+            if (!sendMessage(obtainMessage())) {
+                throw new EventBusException("Could not send handler message");
             }
         }
     }
@@ -87,27 +85,33 @@ public class HandlerPoster extends Handler implements Poster {
      */
     @Override
     public void handleMessage(Message msg) {
-        boolean rescheduled = false;
+        boolean exitedNormally = false;
         try {
             // 获取一个开始时间
             long started = SystemClock.uptimeMillis();
             // 死循环
             while (true) {
-                // 取出队列中最前面的元素
-                PendingPost pendingPost = queue.poll();
-                // 接下来会进行两次校验操作
+                // 取出队列中最前面的元素，主线程不等待正在链接的生产者
+                PendingPost pendingPost = queue.pollIfLinked();
                 // 判空 有可能队列中已经没有元素
                 if (pendingPost == null) {
-                    // 再次检查，这次是同步的
-                    synchronized (this) {
-                        // 继续取队头的元素
-                        pendingPost = queue.poll();
-                        if (pendingPost == null) {
-                            // 还是为 null，将处理状态设置为不活跃，跳出循环
-                            handlerActive = false;
-                            return;
+                    if (!queue.isEmpty()) {
+                        // 生产者还没有完成链接，保持活跃状态，发送消息稍后继续，不在主线程中自旋
+                        if (!sendMessage(obtainMessage())) {
+                            throw new EventBusException("Could not send handler message");
                         }
+                        exitedNormally = true;
+                        return;
                     }
+                    // 将处理状态设置为不活跃
+                    handlerActive.set(false);
+                    // 置为不活跃前可能有事件入队但没有发送消息，此时重新抢占继续处理
+                    // 抢占失败说明已有新消息发出，跳出循环，不能再修改处理状态
+                    if (queue.isEmpty() || !handlerActive.compareAndSet(false, true)) {
+                        exitedNormally = true;
+                        return;
+                    }
+                    continue;
                 }
                 // 调用订阅者方法
                 eventBus.invokeSubscriber(pendingPost);
@@ -119,14 +123,16 @@ public class HandlerPoster extends Handler implements Poster {
                     if (!sendMessage(obtainMessage())) {
                         throw new EventBusException("Could not send handler message");
                     }
-                    // 设置为活跃状态
-                    rescheduled = true;
+                    // 保持活跃状态
+                    exitedNormally = true;
                     return;
                 }
             }
         } finally {
-            // 更新 Handle 状态
-            handlerActive = rescheduled;
+            // 异常退出时将 Handle 置为不活跃，正常退出时状态已经交出或保持活跃
+            if (!exitedNormally) {
+                handlerActive.set(false);
+            }
         }
     }
 }
\ No newline at end of file